@@ -0,0 +1,173 @@
+package stopmotioneditor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+
+/**
+ * This class plays the audio of the frames during playback, timed by the PlaybackClock instead of the frame being presented.
+ * A player is created for a clip PRE_ROLL before its frame is due, so the media is already loaded when it has to play.
+ * play is invoked ahead of the due time by the measured output latency (time between play and the clip actually moving),
+ * and a clip that starts late is seeked forward so it stays in sync with the frames.
+ * At most MAX_PLAYERS players exist at once, a player is disposed as soon as its clip ends.
+ * Clips follow the steps of the clock's PlaybackRange, so a looped frame plays its clip every time it comes around.
+ * Clips are played at the speed of the clock, a range played in reverse has no audio since clips can't be played backwards
+ */
+public class AudioScheduler {
+    public static final int MAX_PLAYERS = 4;
+    public static final long PRE_ROLL = 1000000000L; //players are created one second before their frame is due
+    public static final long INITIAL_OUTPUT_LATENCY = 50000000L; //used until the first clip is measured, 50 ms
+    public static final long MAX_OUTPUT_LATENCY = 250000000L; //measurements above this are taken as hiccups
+    public static final double LATENCY_WEIGHT = 0.3; //weight of the last measurement in the output latency
+
+    private PlaybackClock clock;
+    private PlaybackRange range;
+    private Media[] audios; //audio of each frame of the project, null if it has none
+    private int nextStepToLoad; //first step whose clip isn't pre-rolled yet
+    private int nextStepToPlay; //first step whose clip isn't played yet
+    private ArrayDeque<Cue> loadedCues = new ArrayDeque<>(); //pre-rolled cues that aren't played yet, in order
+    private ArrayList<Cue> activeCues = new ArrayList<>(); //cues that have a player, the oldest first
+    private long outputLatency = INITIAL_OUTPUT_LATENCY; //nanoseconds
+
+    /**
+     * Invoke from the JavaFX thread
+     * @param frames frames to be played in order
+     * @param clock clock the frames are played with
+     */
+    public AudioScheduler(ArrayList<Frame> frames, PlaybackClock clock){
+        this.clock = clock;
+        this.range = clock.getRange();
+        this.audios = new Media[frames.size()];
+        for(int i = 0; i < frames.size() && !this.range.isReversed(); i++){
+            this.audios[i] = frames.get(i).getAudio();
+        }
+        this.nextStepToLoad = clock.getStartStep();
+        this.nextStepToPlay = clock.getStartStep();
+    }
+    /**
+     * Loads the clips that are due soon and plays the ones that are due, invoke on every pulse of the PlayScreen
+     * Before the clock starts only the first clips are loaded
+     */
+    public void update(long now){
+        long position = this.clock.getPosition(now);
+        //pre-roll the upcoming clips while there are free players, steps without audio are passed
+        while(this.nextStepToLoad < this.range.getLength() && this.clock.getStepTime(this.nextStepToLoad) - position <= PRE_ROLL){
+            Media audio = this.audios[this.range.getFrameIndex(this.nextStepToLoad)];
+            if(audio != null){
+                if(this.activeCues.size() >= MAX_PLAYERS){
+                    break;
+                }
+                this.loadedCues.addLast(this.load(audio, this.nextStepToLoad));
+            }
+            this.nextStepToLoad++;
+        }
+        if(!this.clock.isStarted()){
+            return;
+        }
+        while(this.nextStepToPlay < this.range.getLength() && this.clock.getStepTime(this.nextStepToPlay) - this.outputLatency <= position){
+            int step = this.nextStepToPlay;
+            this.nextStepToPlay++;
+            Media audio = this.audios[this.range.getFrameIndex(step)];
+            if(audio == null){
+                continue;
+            }
+            Cue cue;
+            if(!this.loadedCues.isEmpty() && this.loadedCues.peekFirst().step == step){
+                cue = this.loadedCues.removeFirst();
+            }
+            else{
+                //every player is busy with an earlier clip, the oldest one is cut short
+                if(this.activeCues.size() >= MAX_PLAYERS){
+                    this.dispose(this.activeCues.get(0));
+                }
+                cue = this.load(audio, step);
+                this.nextStepToLoad = Math.max(this.nextStepToLoad, step + 1);
+            }
+            if(cue.player != null){ //null if the media failed to load
+                this.play(cue, position);
+            }
+        }
+    }
+    //Disposes every player, invoke when playing stops
+    public void stop(){
+        for(Cue cue : new ArrayList<>(this.activeCues)){
+            this.dispose(cue);
+        }
+        this.loadedCues.clear();
+        this.nextStepToLoad = this.range.getLength();
+        this.nextStepToPlay = this.range.getLength();
+    }
+
+    //Creates a player for the clip of the given step, the media starts loading in the background
+    private Cue load(Media audio, int step){
+        Cue cue = new Cue(step);
+        cue.player = new MediaPlayer(audio);
+        cue.player.setOnEndOfMedia(() -> this.dispose(cue));
+        cue.player.setOnError(() -> {
+            System.out.println("Audio error");
+            System.out.println(cue.player.getError());
+            this.dispose(cue);
+        });
+        this.activeCues.add(cue);
+        return cue;
+    }
+    /**
+     * Starts the clip of the cue so that it is heard at its due time
+     * A clip that would start later than half a frame is seeked forward by the time it is late
+     */
+    private void play(Cue cue, long position){
+        MediaPlayer player = cue.player;
+        double speed = this.clock.getSpeed();
+        long tolerance = Math.round(PlaybackClock.NANOS_PER_SECOND / this.clock.getEffectiveFps() / 2); //half a frame duration
+        long lateness = position + this.outputLatency - this.clock.getStepTime(cue.step); //the step time changes with the speed
+        long offset = 0;
+        if(lateness > tolerance){
+            offset = Math.round(lateness * speed); //the clip moves speed times faster than real time
+            player.seek(Duration.millis(offset / 1000000.0));
+        }
+        player.setRate(speed);
+        long playTime = System.nanoTime();
+        long startOffset = offset;
+        //the first time the clip moves gives the output latency
+        ChangeListener<Duration> latencyListener = new ChangeListener<Duration>(){
+            @Override
+            public void changed(ObservableValue<? extends Duration> observable, Duration oldTime, Duration newTime){
+                long played = Math.round((Math.round(newTime.toMillis() * 1000000) - startOffset) / speed); //in real time
+                if(played <= 0){
+                    return;
+                }
+                player.currentTimeProperty().removeListener(this);
+                recordLatency(System.nanoTime() - playTime - played);
+            }
+        };
+        player.currentTimeProperty().addListener(latencyListener);
+        player.play(); //queued by the player if the media isn't ready yet
+    }
+    private void recordLatency(long latency){
+        if(latency < 0 || latency > MAX_OUTPUT_LATENCY){
+            return;
+        }
+        this.outputLatency += Math.round((latency - this.outputLatency) * LATENCY_WEIGHT);
+    }
+    private void dispose(Cue cue){
+        if(cue.player != null){
+            cue.player.dispose();
+            cue.player = null;
+        }
+        this.activeCues.remove(cue);
+    }
+
+    //Clip of a step, the time it is due is asked from the clock since it changes with the speed
+    private static class Cue {
+        private int step;
+        private MediaPlayer player; //null after the player is disposed
+
+        Cue(int step){
+            this.step = step;
+        }
+    }
+}
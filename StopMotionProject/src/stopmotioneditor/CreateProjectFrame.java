@@ -277,7 +277,7 @@ public class CreateProjectFrame extends javax.swing.JFrame {
     private MainMenuFrame mainMenu;
     //initializing projectname and editable image to create a project from Project class
     private String projectName;
-    private ArrayList<EditableImage> projectImages = new ArrayList<EditableImage>();
+    private ArrayList<Frame> projectImages = new ArrayList<Frame>();
     //initializing instance variable file to add it to database
     private File file;
     //initializing fc variable to use JFileChoosers properties
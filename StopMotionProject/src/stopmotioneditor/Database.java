@@ -6,6 +6,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.sql.Connection;
 import javax.imageio.ImageIO;
@@ -42,6 +43,9 @@ import javafx.scene.shape.Polyline;
 public final class Database {
     private static final String URL = "jdbc:sqlite:db.db";    // Database connection URL
     private static Connection CONN = setConnection();
+    static {
+        addHoldCountColumn();
+    }
 
     /**
      * The private method which sets database connection
@@ -58,6 +62,30 @@ public final class Database {
         }  
     }
 
+    /**
+     * Adds the hold_count column to Editable_Images if the database was created before frames could be held
+     * Existing images get 1, i.e. they are displayed for a single frame duration as before
+     */
+    private static void addHoldCountColumn () {
+        if (CONN == null) {
+            return;
+        }
+        try {
+            Statement stmt = CONN.createStatement();
+            ResultSet rs = stmt.executeQuery( "PRAGMA table_info(Editable_Images)");
+            while (rs.next()) {
+                if (rs.getString( "name").equals( "hold_count")) {
+                    return;
+                }
+            }
+            stmt.executeUpdate( "ALTER TABLE Editable_Images ADD COLUMN hold_count INTEGER NOT NULL DEFAULT 1");
+        }
+        catch (SQLException ex) {
+            System.out.println("addHoldCountColumn error");
+            System.out.println(ex);
+        }
+    }
+
     /**
      * INVOKE THIS METHOD WHEN USER TRIES TO LOG IN
      * This method takes username and password strings, then check if there is such a user in the database.
@@ -234,8 +262,8 @@ public final class Database {
      * @param Project project object which images will be added
      * @return returns ArrayList of NEW added images
      */
-    public static ArrayList<EditableImage> addNewImagesToProject (File file, String username, Project project) {
-        ArrayList<EditableImage> al = new ArrayList<EditableImage>();
+    public static ArrayList<Frame> addNewImagesToProject (File file, String username, Project project) {
+        ArrayList<Frame> al = new ArrayList<Frame>();
 
         // save new images to database and copy to projects folder
         int projectID = getProjectID( username, project.getName());
@@ -245,7 +273,7 @@ public final class Database {
 
         ArrayList<File> newImages = readImagesFromFolderToFileArrayList(file);
         for (File image : newImages) {
-            al.add( new EditableImage( image.getPath(), project, index));
+            al.add( new Frame( image.getPath(), project, index));
             index++;
         }
         return al;
@@ -253,11 +281,11 @@ public final class Database {
     
     /**
      * INVOKE THIS METHOD AFTER USER SAVES HIS CHANGES IN THE PROJECT
-     * @param images ArrayList which contains EditableImages of the project
+     * @param frames ArrayList which contains Frames of the project
      * @param username Username of the user who logged in
      * @param projectName Name of the project in which changes are made.
      */
-    public static void saveChangesInProject (ArrayList<EditableImage> images, String username, String projectName, double fps) {
+    public static void saveChangesInProject (ArrayList<Frame> frames, String username, String projectName, double fps) {
         try {
             int projectID = getProjectID( username, projectName);
             PreparedStatement pstmt = CONN.prepareStatement("DELETE FROM Editable_Images WHERE project_id = ?");
@@ -273,8 +301,8 @@ public final class Database {
             pstmt2.setInt(2, projectID);
             pstmt2.executeUpdate();
             
-            for (EditableImage image : images) {
-                saveImageToDatabase(image, projectID);
+            for (Frame frame : frames) {
+                saveImageToDatabase(frame, projectID);
             }
         }
         catch (SQLException ex) {
@@ -378,7 +406,6 @@ public final class Database {
      * @return 
      */
     public static Project getProject (String username, String projectName) {
-        ArrayList<EditableImage> images = new ArrayList<EditableImage>();
         Project project = new Project(projectName);
         
         // Set project fps
@@ -405,7 +432,7 @@ public final class Database {
         try {
             int projectID = getProjectID(username, projectName);
 
-            PreparedStatement pstmt = CONN.prepareStatement("SELECT filepath,image_index FROM Editable_Images WHERE project_id = ?");
+            PreparedStatement pstmt = CONN.prepareStatement("SELECT filepath,image_index,hold_count FROM Editable_Images WHERE project_id = ?");
             pstmt.setInt(1, projectID);
             ResultSet rs = pstmt.executeQuery();
             
@@ -413,24 +440,12 @@ public final class Database {
                 String filepath = rs.getString("filepath");
                 int index = rs.getInt("image_index");
                 String fp = new File(filepath).toURI().toString();
-                EditableImage ei = new EditableImage(fp, project, index);
-                String mediaFilePath = null;
+                Frame frame = new Frame(fp, project, index);
+                frame.setHoldCount(rs.getInt("hold_count"));
+                frame.setMediaFilePath(getMediaFilePathOfFrame(frame));                
+                frame.setLines(deserializePolylines(frame));
                 
-                try {
-                    PreparedStatement pstmt2 = CONN.prepareStatement("SELECT filepath FROM Medias WHERE image_id = ?");
-                    pstmt2.setInt(1, getEditableImageID(ei));
-                    ResultSet rs2 = pstmt2.executeQuery();
-                    if (rs2.next()) {
-                        mediaFilePath = rs2.getString("filepath");
-                    }
-                }
-                catch (SQLException ex) {
-                    System.out.println("getProject error in media check");
-                }
-                ei.setMediaFilePath(mediaFilePath);                
-                ei.setLines(deserializePolylines(ei));
-                
-                project.addImage(ei);
+                project.addFrame(frame);
                 project.incrementNumberOfImages();
             }
             
@@ -443,6 +458,106 @@ public final class Database {
         return null;
     }
     
+    /**
+     * INVOKE THIS METHOD TO OPEN A PROJECT IN THE EDIT SCREEN
+     * Works like getProject, but doesn't wait for the images. The returned project contains the drawings and media of every frame,
+     * but frames are not loaded yet: their pixels are streamed in by the project's ProjectLoader, nearest to the selected image first.
+     * @param username owner of the project
+     * @param projectName name of the project
+     * @return project whose images are still being loaded, null if project cannot be read
+     */
+    public static Project openProject (String username, String projectName) {
+        Project project = new Project(projectName);
+        
+        try {
+            int projectID = getProjectID(username, projectName);
+            
+            PreparedStatement pstmt = CONN.prepareStatement("SELECT fps FROM Projects WHERE id = ?");
+            pstmt.setInt(1, projectID);
+            ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                Gson gson = new GsonBuilder().setPrettyPrinting().create();
+                project.setFpsRate(gson.fromJson(rs.getString(1), Double.class));
+            }
+            
+            // Only the rows are read here, no image is decoded
+            HashMap<Integer, Frame> framesByID = new HashMap<Integer, Frame>();
+            PreparedStatement pstmt2 = CONN.prepareStatement("SELECT id,filepath,image_index,hold_count FROM Editable_Images WHERE project_id = ?");
+            pstmt2.setInt(1, projectID);
+            ResultSet rs2 = pstmt2.executeQuery();
+            while (rs2.next()) {
+                String fp = new File(rs2.getString("filepath")).toURI().toString();
+                int index = rs2.getInt("image_index");
+                Frame frame = new Frame(fp, project, index, false);
+                frame.setHoldCount(rs2.getInt("hold_count"));
+                framesByID.put(rs2.getInt("id"), frame);
+                project.addFrame(frame);
+                project.incrementNumberOfImages();
+            }
+            
+            // Drawings and media of all frames are read here with one query each, so the ProjectLoader never uses the connection
+            Gson gson = new GsonBuilder().setPrettyPrinting().create();
+            String linesQuery = "SELECT Polylines.image_id, points, stroke, stroke_width FROM Polylines "
+            + "JOIN Editable_Images "
+            + "ON Polylines.image_id = Editable_Images.id "
+            + "WHERE Editable_Images.project_id = ?";
+            PreparedStatement pstmt3 = CONN.prepareStatement(linesQuery);
+            pstmt3.setInt(1, projectID);
+            ResultSet rs3 = pstmt3.executeQuery();
+            while (rs3.next()) {
+                Frame frame = framesByID.get(rs3.getInt("image_id"));
+                if (frame != null) {
+                    frame.getLines().add(readPolyline(rs3, gson));
+                }
+            }
+            
+            String mediasQuery = "SELECT Medias.image_id, Medias.filepath FROM Medias "
+            + "JOIN Editable_Images "
+            + "ON Medias.image_id = Editable_Images.id "
+            + "WHERE Editable_Images.project_id = ?";
+            PreparedStatement pstmt4 = CONN.prepareStatement(mediasQuery);
+            pstmt4.setInt(1, projectID);
+            ResultSet rs4 = pstmt4.executeQuery();
+            while (rs4.next()) {
+                Frame frame = framesByID.get(rs4.getInt("image_id"));
+                if (frame != null && frame.getMediaFilePath() == null) { // first media of the image, like before
+                    frame.setMediaFilePath(rs4.getString("filepath"));
+                }
+            }
+        }
+        catch (SQLException ex) {
+            System.out.println("openProject error");
+            System.out.println(ex);
+            return null;
+        }
+        
+        ProjectLoader loader = new ProjectLoader(project);
+        project.setProjectLoader(loader);
+        loader.start();
+        return project;
+    }
+    
+    /**
+     * This method returns the filepath of the media attached to the given Frame
+     * @param frame Frame object
+     * @return filepath of the media, null if there is no media
+     */
+    private static String getMediaFilePathOfFrame (Frame frame) {
+        String mediaFilePath = null;
+        try {
+            PreparedStatement pstmt = CONN.prepareStatement("SELECT filepath FROM Medias WHERE image_id = ?");
+            pstmt.setInt(1, getEditableImageID(frame.getFilePath()));
+            ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                mediaFilePath = rs.getString("filepath");
+            }
+        }
+        catch (SQLException ex) {
+            System.out.println("getProject error in media check");
+        }
+        return mediaFilePath;
+    }
+    
     /**
      * This method returns all of the projects of a user from the database
      * @param username username
@@ -484,13 +599,13 @@ public final class Database {
         // Specifying the supported extensions
         String[] extensions = new String[] { "jpg", "jpeg", "png"}; 
 
-        // Filter to identify images based on their extensions
+        // Filter to identify images based on their extensions and headers
         FilenameFilter filter = new FilenameFilter() {
             @Override
             public boolean accept(File file, String name) {
                 for (String ext : extensions) {
                     if (name.endsWith("." + ext)) {
-                        return true;
+                        return ImageProbe.isValidImage(new File(file, name));  // only the header is read, corrupt files are skipped
                     }
                 }
                 return false;
@@ -520,6 +635,7 @@ public final class Database {
             projectFolder.mkdirs();  // if there is no folder of this project, create it
         }
         int index = getLastIndexOfProject(projectID) + 1;
+        ArrayList<File> copiedFiles = new ArrayList<File>();
                 
         for (File file : files) {
             String from = file.getPath();
@@ -530,6 +646,7 @@ public final class Database {
             try {
                 Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
                 saveImageToDatabase(to, index, projectID);
+                copiedFiles.add(target.toFile());
                 index++;
             }
             catch (FileAlreadyExistsException ex) {
@@ -541,19 +658,22 @@ public final class Database {
             } 
             
         }
+        // Image levels are written once here on every core in the background, reopening the project only reads them
+        FrameDecoder.createImageLevels(copiedFiles);
     }
     
     /**
      * This method inserts into Editable_Images table in the database
-     * @param image EditableImage to be saved
+     * @param frame Frame to be saved
      * @param projectID id of the project which the image belongs to
      */
-    private static void saveImageToDatabase (EditableImage image, int projectID) {
+    private static void saveImageToDatabase (Frame frame, int projectID) {
         try {
-            PreparedStatement pstmt = CONN.prepareStatement("INSERT INTO Editable_Images (filepath, image_index, project_id) VALUES (?, ?, ?)");
-            pstmt.setString(1, image.getFilePath());
-            pstmt.setInt(2, image.getIndex());
+            PreparedStatement pstmt = CONN.prepareStatement("INSERT INTO Editable_Images (filepath, image_index, project_id, hold_count) VALUES (?, ?, ?, ?)");
+            pstmt.setString(1, frame.getFilePath());
+            pstmt.setInt(2, frame.getIndex());
             pstmt.setInt(3, projectID);
+            pstmt.setInt(4, frame.getHoldCount());
             pstmt.executeUpdate();
         } 
         catch (SQLException ex) {
@@ -561,9 +681,9 @@ public final class Database {
             System.out.println("Error in saving images to database");
         }
         
-        ArrayList<Polyline> polylines = image.getLines();
+        ArrayList<Polyline> polylines = frame.getLines();
         for (Polyline polyline : polylines) {
-            serializePolyline(polyline, image);
+            serializePolyline(polyline, frame.getFilePath());
         }
         
     }
@@ -671,10 +791,19 @@ public final class Database {
      * @return id of the EditableImage in the database
      */
     private static int getEditableImageID (EditableImage editableImage) {
+        return getEditableImageID(editableImage.getFilePath());
+    }
+    
+    /**
+     * This is a private method which returns the id of the image on the given filepath in the database
+     * @param filepath filepath of the image, same with the one in Frame
+     * @return id of the image in the database
+     */
+    private static int getEditableImageID (String filepath) {
         int imageID = 0;
         try {
             PreparedStatement pstmt = CONN.prepareStatement("SELECT id FROM Editable_Images WHERE filepath = ?");
-            pstmt.setString(1, editableImage.getFilePath());
+            pstmt.setString(1, filepath);
             ResultSet rs = pstmt.executeQuery();
             if (rs.next()) {
                 imageID = rs.getInt("id");
@@ -692,8 +821,8 @@ public final class Database {
      * @param projectName name of the project
      * @param index index of the image in the project
      */
-    private static void serializePolyline (Polyline polyline, EditableImage editableImage) {    
-        int imageID = getEditableImageID(editableImage);
+    private static void serializePolyline (Polyline polyline, String filepath) {    
+        int imageID = getEditableImageID(filepath);
         ArrayList<Double> colorCodes = new ArrayList<Double>();
         double red = ((Color) polyline.getStroke()).getRed();
         double green = ((Color) polyline.getStroke()).getGreen();
@@ -730,9 +859,9 @@ public final class Database {
         
     }
     
-    private static ArrayList<Polyline> deserializePolylines (EditableImage image) {
+    private static ArrayList<Polyline> deserializePolylines (Frame frame) {
         ArrayList<Polyline> polylines = new ArrayList<Polyline>();
-        int imageID = getEditableImageID(image);
+        int imageID = getEditableImageID(frame.getFilePath());
         
         try {
             PreparedStatement pstmt = CONN.prepareStatement("SELECT points, stroke, stroke_width FROM Polylines WHERE image_id = ?");
@@ -743,19 +872,7 @@ public final class Database {
             Gson gson = new GsonBuilder().setPrettyPrinting().create();
             
             while (rs.next()) {
-                String points = rs.getString("points");
-                String colorCodes = rs.getString("stroke");
-                String strokeWidth = rs.getString("stroke_width");
-                
-                List<Double> pts = gson.fromJson( points, new TypeToken<List<Double>>(){}.getType());
-                ArrayList<Double> colors = gson.fromJson( colorCodes, new TypeToken<List<Double>>(){}.getType());
-                Double width = gson.fromJson( strokeWidth, Double.class);
-                
-                Polyline p = new Polyline();
-                p.getPoints().addAll( pts);
-                p.setStroke( new Color (colors.get(0), colors.get(1), colors.get(2), colors.get(3)));
-                p.setStrokeWidth( width);
-                polylines.add( p);
+                polylines.add( readPolyline(rs, gson));
             }
             
         } catch (SQLException ex) {
@@ -764,4 +881,21 @@ public final class Database {
         }
         return polylines;
     }
+    
+    // Creates the polyline of the current row, the row must have the points, stroke and stroke_width columns
+    private static Polyline readPolyline (ResultSet rs, Gson gson) throws SQLException {
+        String points = rs.getString("points");
+        String colorCodes = rs.getString("stroke");
+        String strokeWidth = rs.getString("stroke_width");
+        
+        List<Double> pts = gson.fromJson( points, new TypeToken<List<Double>>(){}.getType());
+        ArrayList<Double> colors = gson.fromJson( colorCodes, new TypeToken<List<Double>>(){}.getType());
+        Double width = gson.fromJson( strokeWidth, Double.class);
+        
+        Polyline p = new Polyline();
+        p.getPoints().addAll( pts);
+        p.setStroke( new Color (colors.get(0), colors.get(1), colors.get(2), colors.get(3)));
+        p.setStrokeWidth( width);
+        return p;
+    }
 }
\ No newline at end of file
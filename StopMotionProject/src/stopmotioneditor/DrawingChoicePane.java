@@ -20,6 +20,7 @@ import javafx.event.EventType;
 import javafx.geometry.Pos;
 import javafx.scene.layout.Pane;
 import javafx.scene.shape.Circle;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.shape.Rectangle;
@@ -58,17 +59,23 @@ public class DrawingChoicePane extends Pane{
     private Label blueLabel = new Label(" Blue\n(0-255)");
     private Label greenLabel = new Label(" Green\n(0-255)");
     private Label opacityLabel =  new Label(" Opacity\n(10-100)");
+    private CheckBox onionSkinBox = new CheckBox("Onion skin");
+    private Slider onionSkinSlider = new Slider(OnionSkin.MIN_DEPTH, OnionSkin.MAX_DEPTH, OnionSkin.INITIAL_DEPTH); //number of previous frames
+    private Label onionSkinLabel = new Label(" Frames\n(" + OnionSkin.MIN_DEPTH + "-" + OnionSkin.MAX_DEPTH + ")");
     //Panes
     private VBox bigVBox = new VBox();
     private VBox smallVBox = new VBox();//contains the circlePane and the slider
     private GridPane fixedColorPane = new GridPane();
     private GridPane rgbPane = new GridPane();
+    private HBox onionSkinPane = new HBox(); //contains the onion skin check box and slider
     private Rectangle seperator = new Rectangle();// separates the slider and circle with the below nodes
     private Pane circlePane = new Pane();//contains the circle pane, smallVbox contains this pane
     //Other
     private String comboBoxValue; //this pane's String representation on combobox
-    public DrawingChoicePane(String comboBoxValue){
+    private OnionSkin onionSkin; //onion skin of the EditScreen
+    public DrawingChoicePane(String comboBoxValue, OnionSkin onionSkin){
         this.comboBoxValue = comboBoxValue;
+        this.onionSkin = onionSkin;
         
         this.setWidth(THIS_WIDTH);
         
@@ -81,9 +88,10 @@ public class DrawingChoicePane extends Pane{
         this.setFixedRectangles(FIXED_RECTANGLES_WIDTH);
         this.setRGBPane();
         this.setSeparator();
+        this.setOnionSkinPane();
         
         bigVBox.setSpacing(30);//changel ater on
-        bigVBox.getChildren().addAll(smallVBox,seperator,fixedColorPane,rgbPane);
+        bigVBox.getChildren().addAll(smallVBox,seperator,fixedColorPane,rgbPane,onionSkinPane);
         this.getChildren().addAll(bigVBox);
         this.addBindings();
     }
@@ -173,6 +181,20 @@ public class DrawingChoicePane extends Pane{
         
         rgbPane.setAlignment(Pos.CENTER);//set the elements onto the center
     }
+    private void setOnionSkinPane(){
+        onionSkinSlider.setMajorTickUnit(1);
+        onionSkinSlider.setMinorTickCount(0);
+        onionSkinSlider.setSnapToTicks(true);
+        
+        onionSkinPane.getChildren().addAll(onionSkinBox, onionSkinSlider, onionSkinLabel);
+        onionSkinPane.setSpacing(20);
+        onionSkinPane.setAlignment(Pos.CENTER);
+        
+        onionSkinBox.setOnAction(e -> this.onionSkin.setEnabled(onionSkinBox.isSelected()));
+        onionSkinSlider.valueProperty().addListener(ov -> {
+            this.onionSkin.setDepth((int)Math.round(onionSkinSlider.getValue()));
+        });
+    }
     /**
      * 
      * @return Circle object of the DrawingChoicePane, will be used to assess the properties of the drawing to be made.
@@ -25,6 +25,9 @@ import javafx.scene.shape.Circle;
 import javafx.scene.paint.Color;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.control.TextInputControl;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseButton;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.StackPane;
@@ -48,25 +51,32 @@ public class EditScreen extends Application{
     
     //Layout management
     private Pane editableImagePane = new Pane();
-    private HBox smallImageBox = new HBox();
-    private ScrollPane scrollPane; //this will hold smallImageBox
+    private Filmstrip filmstrip; //holds the SmallImages, only the visible ones are created
+    private FrameScrubber scrubber; //swaps the EditableImage at most once per pulse while the selection changes
+    private OnionSkin onionSkin; //previous frames displayed over the EditableImage, off initially
     private BorderPane borderPane = new BorderPane(); //will comtain smallImageBox and editableImagePane
     private ComboBox<String> choicePaneSelector = new ComboBox<>();
     private ArrayList<Pane> choicePanes = new ArrayList<>();
     private VBox choicePaneContainer = new VBox(); //holds the comboBox and choice pane
+    private HBox selectorContainer = new HBox(); //holds the comboBox and the play button
+    private Button btPlay = new Button("Play"); //plays the project as it is in the editor
     private HBox bigContainer = new HBox();//will contain borderPane and choicePaneContainer with respect to selection
     private Pane selectedChoicePane; //represents the choice pane selected from the combobox
     
     @Override
     public void start(Stage primaryStage){
         //Receive the corresponding Project instance from the database
-        this.project = Database.getProject("emir", "project");  // ENTER USERNAME AND PROJECTNAME HERE 
+        //Images are placeholders at first, they are streamed in by the project's ProjectLoader
+        this.project = Database.openProject("emir", "project");  // ENTER USERNAME AND PROJECTNAME HERE 
         this.primaryStage = primaryStage;
         
         this.project.setEditScreen(this); //Set the project's EditScreen
+        this.onionSkin = new OnionSkin(this.project);
         //Initializations
         this.setEditableImagePane();
         this.setSmallImageBox();
+        this.scrubber = new FrameScrubber(this.project, this, this.filmstrip);
+        this.scrubber.prefetchNeighbours(0);
         this.setBorderPane();
         this.setChoicePanes();
         this.setChoicePaneContainer();
@@ -75,6 +85,7 @@ public class EditScreen extends Application{
         
         //Set the Scene and show the primaryStage
         Scene scene = new Scene(bigContainer);
+        this.setKeyHandling(scene);
         primaryStage.setScene(scene);
         primaryStage.setTitle("Edit Project");
         primaryStage.setOnCloseRequest(e -> { 
@@ -95,6 +106,29 @@ public class EditScreen extends Application{
         */
         this.updateEditableImagePane(0);
     }
+    /**
+     * Selects the image at the given index, the EditableImagePane is redrawn on the next pulse
+     * Invoke when a smallImage is clicked, doesn't perform bounds checking
+     */
+    public void selectImage(int index){
+        this.scrubber.select(index);
+    }
+    //Left and right arrow keys step through the frames, unless a text field is being edited
+    private void setKeyHandling(Scene scene){
+        scene.addEventFilter(KeyEvent.KEY_PRESSED, e -> {
+            if(e.getTarget() instanceof TextInputControl){
+                return;
+            }
+            if(e.getCode() == KeyCode.RIGHT){
+                this.scrubber.step(1);
+                e.consume();
+            }
+            else if(e.getCode() == KeyCode.LEFT){
+                this.scrubber.step(-1);
+                e.consume();
+            }
+        });
+    }
     /**
      * This method redraws the EditableImagePane after a smallImage is pressed, it doesn't perform bounds checking
      * Invoke when a smallImage is clicked
@@ -106,17 +140,26 @@ public class EditScreen extends Application{
         
         this.selectedImg = this.project.getImage(index);
         this.project.setSelectedImageIndex(index);
+        //Only frames around the selection keep their EditableImage and edit level pixels
+        this.project.recycleFarFrames(index);
         
         Pane container = this.selectedImg.getContainer();
         this.editableImagePane.getChildren().add(container);
+        this.onionSkin.show(this.selectedImg);
+    }
+    //Invoked through the project when the pixels or drawings of a frame change
+    public void frameChanged(Frame frame){
+        if(this.onionSkin != null){
+            this.onionSkin.frameChanged(frame);
+        }
     }
     //This methods sets EditableImagePane to the center of the borderPane, scrollPane to the bottom 
     private void setBorderPane(){
         this.borderPane.setCenter(this.editableImagePane);
-        this.borderPane.setBottom(scrollPane);
+        this.borderPane.setBottom(filmstrip);
         
         //Set the alignment of both elements to center by using static method of BorderPane
-        BorderPane.setAlignment(scrollPane, Pos.CENTER);
+        BorderPane.setAlignment(filmstrip, Pos.CENTER);
         BorderPane.setAlignment(editableImagePane, Pos.CENTER);
         
         //top right bottom left
@@ -125,32 +168,61 @@ public class EditScreen extends Application{
     }
     //Invoke this method from constructor and when a deletion appending etc happens
     public void setSmallImageBox(){
-        //set the smallImageBox's pos value
-        this.smallImageBox.setAlignment(Pos.CENTER);
-        
-        this.smallImageBox.getChildren().clear(); // This will avoid children duplicate exception
-        
-        
-        
-        //get the VBox(SmallImageContainer) of the SmallImages and add them all to the smallImageBox
-        for(int i = 0; i < this.project.getNumberOfImages(); i++){
-            EditableImage currentImg = this.project.getImage(i);
-            SmallImage currentSmallImg = (SmallImage) (currentImg.getSmallImage());
-            
-            //Update the index labels of each smallImage before setting them 
-            currentSmallImg.updateIndexLabel();
-            
-            smallImageBox.getChildren().add(currentSmallImg.getSmallImagePaneContainer()); //Add smallImg's StackPane
+        if(this.filmstrip == null){
+            this.filmstrip = new Filmstrip(this.project);
         }
-        this.smallImageBox.setSpacing(SMALL_IMAGE_BOX_SPACING);//set spacing of this pane to 5 pixels
-        
-        //set the min height of the smallImageBox to 140 pixels
-        this.smallImageBox.setMinHeight(SMALL_IMAGE_BOX_MIN_HEIGHT);
-        
-        //Add the smallImageBox into the scrollPane
-        this.scrollPane = new ScrollPane(this.smallImageBox);
-        scrollPane.setVbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);//never shot the vertical scrollbar
-        this.scrollPane.setMinHeight(160);
+        else{
+            this.filmstrip.updateFrames(); //visible SmallImages display the new order, no SmallImage is created for the others
+        }
+    }
+    /**
+     * Displays the frames inserted to the project, only the new range is added to the filmstrip
+     * Invoke from the project after its frames and their indexes are updated
+     */
+    public void framesInserted(int startIndex, int count){
+        this.scrubber.flush(); //a selection that isn't displayed yet is displayed before the indexes shift
+        int selectedIndex = this.project.getSelectedImageIndex();
+        if(selectedIndex >= startIndex){
+            this.project.setSelectedImageIndex(selectedIndex + count); //selected frame is shifted
+        }
+        this.filmstrip.framesInserted(startIndex, count);
+        this.onionSkin.update(); //previous frames of the selected one may have changed
+    }
+    /**
+     * Removes the frames removed from the project from the filmstrip, selects the next frame if the selected one is removed
+     * Invoke from the project after its frames and their indexes are updated
+     */
+    public void framesRemoved(int startIndex, int count){
+        this.scrubber.flush(); //a selection that isn't displayed yet is displayed before the indexes shift
+        int selectedIndex = this.project.getSelectedImageIndex();
+        if(selectedIndex >= startIndex + count){
+            this.project.setSelectedImageIndex(selectedIndex - count);
+        }
+        else if(selectedIndex >= startIndex){
+            int numberOfImages = this.project.getNumberOfImages();
+            if(numberOfImages == 0){
+                this.editableImagePane.getChildren().clear(); //nothing left to edit
+                this.onionSkin.show(null);
+                this.project.setSelectedImageIndex(-1);
+            }
+            else{
+                this.updateEditableImagePane(Math.min(startIndex, numberOfImages - 1));
+            }
+        }
+        this.filmstrip.framesRemoved(startIndex, count);
+        this.onionSkin.update();
+    }
+    /**
+     * Displays the new order of the frames from startIndex to endIndex inclusive, the selection follows the selected frame
+     * Invoke from the project after its frames and their indexes are updated
+     */
+    public void framesReordered(int startIndex, int endIndex){
+        this.scrubber.flush(); //a selection that isn't displayed yet is displayed before the indexes shift
+        if(this.selectedImg != null){
+            this.project.setSelectedImageIndex(this.selectedImg.getFrame().getIndex());
+        }
+        this.filmstrip.framesReordered(startIndex, endIndex);
+        this.onionSkin.update();
     }
     //this method adds the borderPane and the choicePaneContainer to big HBox
     private void setBigContainer(){
@@ -167,7 +239,7 @@ public class EditScreen extends Application{
         
         //ToDo (ADD MORE CHOICEPANES LATER ON)
         String drawingString = "Add Drawings";
-        this.choicePanes.add(new DrawingChoicePane(drawingString));
+        this.choicePanes.add(new DrawingChoicePane(drawingString, this.onionSkin));
         choicePaneSelector.getItems().add(drawingString);//add comboBox item
         
         String fpsString = "Fps & Audio";
@@ -211,15 +283,25 @@ public class EditScreen extends Application{
             }
         }
         //update the choice pane container (might be problematic)
-        this.choicePaneContainer.getChildren().remove(1); //this arraylist contains the combobox in index 0, selected choice pane in index 1
+        this.choicePaneContainer.getChildren().remove(1); //this arraylist contains the combobox and play button in index 0, selected choice pane in index 1
         this.choicePaneContainer.getChildren().add(this.selectedChoicePane);
         
     }
     //Adds the comboBox and adds the initial selected choice pane, initial choice pane will be add drawings
     private void setChoicePaneContainer(){
-        this.choicePaneContainer.getChildren().add(this.choicePaneSelector);
+        this.btPlay.setOnAction(e -> this.playProject());
+        this.selectorContainer.getChildren().addAll(this.choicePaneSelector, this.btPlay);
+        this.choicePaneContainer.getChildren().add(this.selectorContainer);
         this.choicePaneContainer.getChildren().add(this.selectedChoicePane);
     }
+    /**
+     * Plays the project in a new window without reading it from the database, unsaved changes are played aswell
+     * Pixels of frames that the ProjectLoader hasn't reached yet are decoded while playing
+     */
+    private void playProject(){
+        this.scrubber.flush(); //a selection that isn't displayed yet is displayed first
+        new PlayScreen(this.project).start(new Stage());
+    }
     /**
      * Sends the circle object to the corresponding Project, invoke this during initializations in start method.
      */
@@ -241,11 +323,11 @@ public class EditScreen extends Application{
     */
     public void receiveEventSource(Project project){
         this.project = project;
-        this.selectedImg = (project.getImages(0, 1)).get(0);//initially the first element is the selected image
+        this.selectedImg = project.getImage(0);//initially the first element is the selected image
     }
     //Invoke when a smallImage is clicked, this will return the current selected image's index
     public int getIndexOfSelectedImage(){
-        return this.project.indexOf(this.selectedImg);
+        return this.project.indexOf(this.selectedImg.getFrame());
     }
     /**
      * Will be used to determine whether a drawing can be added when an event is fired from EditableImage
@@ -272,8 +354,14 @@ public class EditScreen extends Application{
      * This method saves the project to our database
      */
     public void closingOperation(){
-        ArrayList<EditableImage> images = project.getAllImages();
+        ProjectLoader loader = project.getProjectLoader();
+        if(loader != null){
+            loader.stop(); //drawings of every frame are read when the project is opened, so nothing is lost
+        }
+        ArrayList<Frame> frames = project.getAllFrames();
         String userName = project.getUserName();
-        Database.saveChangesInProject(images, userName, project.getName(), project.getFpsRate());
+        Database.saveChangesInProject(frames, userName, project.getName(), project.getFpsRate());
+        ThumbnailStore.flush(); //thumbnails that are written while editing are kept for the next time
+        FrameImageCache.clear(); //decoded frames of this project are not needed anymore
     }
 }
\ No newline at end of file
@@ -0,0 +1,176 @@
+package stopmotioneditor;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.skin.VirtualFlow;
+
+/**
+ * This class is the row of SmallImages below the EditableImage on the EditScreen.
+ * It is a horizontal ListView, so only the cells that are visible are created and they are reused for other frames
+ * while scrolling. Thumbnails of the frames just outside the visible cells are decoded in the background beforehand
+ */
+public class Filmstrip extends ListView<Frame>{
+    public static final double CELL_WIDTH = 212 + EditScreen.SMALL_IMAGE_BOX_SPACING; //selection rectangle and spacing
+    public static final int PREFETCH_MARGIN = 10; //number of frames on each side of a visible cell whose thumbnails are decoded beforehand
+
+    private Project project;
+    //cells the ListView has created, only about as many as fit on the screen. Weak so the cells it discards can be collected
+    private ArrayList<WeakReference<FilmstripCell>> cells = new ArrayList<>();
+    private Set<String> queuedThumbnails = ConcurrentHashMap.newKeySet(); //files whose thumbnails are being prefetched
+
+    public Filmstrip(Project project){
+        this.project = project;
+        this.setOrientation(Orientation.HORIZONTAL);
+        this.setFixedCellSize(CELL_WIDTH); //every cell has the same width, so the ListView doesn't measure the frames
+        this.setMinHeight(EditScreen.SCROLLPANE_MIN_HEIGHT);
+        this.setPrefHeight(EditScreen.SCROLLPANE_MIN_HEIGHT + 20); //room for the horizontal scroll bar
+        this.setFocusTraversable(false);
+        this.setCellFactory(listView -> {
+            FilmstripCell cell = new FilmstripCell();
+            this.removeDiscardedCells();
+            this.cells.add(new WeakReference<>(cell));
+            return cell;
+        });
+        this.updateFrames();
+    }
+    /**
+     * Displays all of the current frames of the project, visible cells update their SmallImages
+     * Invoke when the whole project changes, edits should use the methods below so only the edited range is touched
+     */
+    public void updateFrames(){
+        this.getItems().setAll(this.project.getAllFrames());
+        this.refresh(); //indexes of the visible frames may change even if the same frames are displayed
+    }
+    /**
+     * Displays the frames that are added to the project, invoke after the project's frames are inserted
+     * @param startIndex index of the first new frame
+     * @param count number of new frames
+     */
+    public void framesInserted(int startIndex, int count){
+        List<Frame> newFrames = this.project.getAllFrames().subList(startIndex, startIndex + count);
+        this.getItems().addAll(startIndex, newFrames);
+        this.updateVisibleLabels(); //total number of images is on every label
+    }
+    /**
+     * Removes the frames that are removed from the project, invoke after the project's frames are removed
+     * @param startIndex index of the first removed frame
+     * @param count number of removed frames
+     */
+    public void framesRemoved(int startIndex, int count){
+        this.getItems().remove(startIndex, startIndex + count);
+        this.updateVisibleLabels();
+    }
+    /**
+     * Displays the new order of the frames in the given range, e.g. after reversing, number of frames stays the same
+     * @param startIndex inclusive
+     * @param endIndex inclusive
+     */
+    public void framesReordered(int startIndex, int endIndex){
+        List<Frame> frames = this.project.getAllFrames();
+        for(int i = startIndex; i <= endIndex; i++){
+            this.getItems().set(i, frames.get(i)); //only the cells displaying this range are rebound
+        }
+    }
+    //Scrolls just enough to make the frame at the given index visible, scrollTo would move it to the start of the filmstrip
+    public void showFrame(int index){
+        Node flow = this.lookup(".virtual-flow");
+        if(flow instanceof VirtualFlow){
+            ((VirtualFlow<?>)flow).scrollTo(index);
+        }
+        else{
+            this.scrollTo(index); //skin isn't created yet
+        }
+    }
+    /*
+        Cells that display the same frame at the same index aren't updated by the ListView,
+        so their labels and selection are refreshed here. Only the cells on the screen are touched, not every frame
+    */
+    private void updateVisibleLabels(){
+        this.removeDiscardedCells();
+        for(WeakReference<FilmstripCell> reference : this.cells){
+            FilmstripCell cell = reference.get();
+            if(cell != null){
+                cell.updateLabel();
+            }
+        }
+    }
+    //Forgets the cells that are collected or that the ListView has discarded, e.g. when it recreates its cells
+    private void removeDiscardedCells(){
+        Iterator<WeakReference<FilmstripCell>> iterator = this.cells.iterator();
+        while(iterator.hasNext()){
+            FilmstripCell cell = iterator.next().get();
+            if(cell == null || cell.getListView() == null){
+                iterator.remove();
+            }
+        }
+    }
+    /**
+     * Decodes the thumbnails of the frames around the given index that are loaded but not decoded yet
+     * Invoked for every cell that is updated, so thumbnails that are already decoded or queued are passed
+     */
+    private void prefetchThumbnails(int index){
+        int start = Math.max(0, index - PREFETCH_MARGIN);
+        int end = Math.min(this.project.getNumberOfImages() - 1, index + PREFETCH_MARGIN);
+        for(int i = start; i <= end; i++){
+            Frame frame = this.project.getFrame(i);
+            String filePath = (frame == null) ? null : frame.getFilePath();
+            if(filePath != null && frame.isLoaded() && !FrameImageCache.hasThumbnail(filePath) && this.queuedThumbnails.add(filePath)){
+                FrameDecoder.execute(() -> {
+                    try{
+                        FrameImageCache.getThumbnail(filePath);
+                    }
+                    finally{
+                        this.queuedThumbnails.remove(filePath);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * This class represents a cell of the filmstrip, it holds one SmallImage that is moved from frame to frame
+     */
+    class FilmstripCell extends ListCell<Frame>{
+        private SmallImage smallImage;
+
+        FilmstripCell(){
+            this.setStyle("-fx-background-color: transparent; -fx-padding: 0;"); //selection is shown by the SmallImage itself
+        }
+        @Override
+        protected void updateItem(Frame frame, boolean empty){
+            super.updateItem(frame, empty);
+            if(empty || frame == null){
+                if(this.smallImage != null){
+                    this.smallImage.unbindFrame();
+                }
+                this.setGraphic(null);
+                return;
+            }
+            if(this.smallImage == null){
+                this.smallImage = new SmallImage(frame);
+            }
+            else{
+                this.smallImage.setFrame(frame);
+            }
+            this.setGraphic(this.smallImage.getSmallImagePaneContainer());
+            prefetchThumbnails(frame.getIndex());
+        }
+        //Updates the index label and selection of the displayed frame, the thumbnail and drawings stay
+        void updateLabel(){
+            Frame frame = this.getItem();
+            if(frame == null || this.isEmpty() || this.smallImage == null){
+                return;
+            }
+            this.smallImage.updateIndexLabel();
+            this.smallImage.setSelected(frame.getIndex() == project.getSelectedImageIndex());
+        }
+    }
+}
@@ -25,18 +25,12 @@ public class FinalImage extends ImageView{
     
     protected ArrayList<Polyline> lines = new ArrayList<>(); //drawings that have been made
     protected Polyline lastLine; //represents the last line that is added to the lines
-    protected EditableImage editableImage;// editable image of this final image
+    protected Frame frame;// frame of this final image, holds the drawings in editable image coordinates
     protected Pane finalImageContainer = new Pane(); //this will contain the FinalImage itself and its polylines
     
-    public FinalImage(EditableImage editableImage, Image fxImage){//same fxImage with the editableImage
+    public FinalImage(Frame frame, Image fxImage){//same decoded Image with the frame's editableImage, no extra decode
         super(fxImage);
-        this.editableImage = editableImage;
-        this.setPreserveRatio(preserveRatio);
-        //this.setProperties();
-    }
-    public FinalImage(EditableImage editableImage, String filePath){//same filepath with the editableImage
-        super(new Image(filePath));
-        this.editableImage = editableImage;
+        this.frame = frame;
         this.setPreserveRatio(preserveRatio);
         //this.setProperties();
     }
@@ -45,11 +39,11 @@ public class FinalImage extends ImageView{
     /**
      *
      * @param ratio ratio of small image to editable image, or big image to editable image(use constants in EditableImage)
-     * adds the most recent drawing coming from EditableImage
+     * adds the most recent drawing of the frame, coming from EditableImage
      * will be invoked when the mouse has been released after having been dragged
      */
     public void addLastLine(double ratio){
-        Polyline givenLine = this.editableImage.getLastLine();
+        Polyline givenLine = this.frame.getLastLine();
         Polyline temp = new Polyline();//empty polyline
         //set the colors
         
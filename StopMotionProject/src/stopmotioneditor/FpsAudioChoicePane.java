@@ -37,6 +37,9 @@ public class FpsAudioChoicePane extends StackPane{
     
     private Button btAddSound;
     private Button btRemoveSound;
+    private Button btIncreaseHold = new Button("Hold +1"); //selected frame stays one more frame duration
+    private Button btDecreaseHold = new Button("Hold -1");
+    private Label holdLabel = new Label("Hold");
     private Slider fpsSlider = new Slider(MIN_FPS_VALUE, MAX_FPS_VALUE, Project.INITIAL_FPS_RATE);
     private Project project;
     private EditScreen editScreen;
@@ -49,6 +52,7 @@ public class FpsAudioChoicePane extends StackPane{
     //Layout
     private HBox fpsSliderContainer = new HBox(); //will contain the slider and label
     private HBox audioButtonContainer = new HBox();
+    private HBox holdButtonContainer = new HBox(); //will contain the hold label and buttons
     private VBox hboxContainer = new VBox(); //will contain the above horizontal boxes
     
     public FpsAudioChoicePane(Project project, String comboBoxValue, EditScreen editScreen){
@@ -68,6 +72,16 @@ public class FpsAudioChoicePane extends StackPane{
         EventHandler<ActionEvent> soundButtonHandler = new SoundButtonHandler();
         this.btAddSound.setOnAction(soundButtonHandler);
         this.btRemoveSound.setOnAction(soundButtonHandler);
+        
+        //the filmstrip label of the selected frame shows its hold count
+        this.btIncreaseHold.setOnAction(e -> {
+            Frame selectedFrame = editScreen.getSelectedImage().getFrame();
+            selectedFrame.setHoldCount(selectedFrame.getHoldCount() + 1);
+        });
+        this.btDecreaseHold.setOnAction(e -> {
+            Frame selectedFrame = editScreen.getSelectedImage().getFrame();
+            selectedFrame.setHoldCount(selectedFrame.getHoldCount() - 1);
+        });
     }
     public void setSlider(){
         //set the properties of the slider
@@ -85,11 +99,13 @@ public class FpsAudioChoicePane extends StackPane{
     public void setElements(){
         this.fpsSliderContainer.setSpacing(FPS_SLIDER_CONTAINER_SPACING);
         this.audioButtonContainer.setSpacing(AUDIO_BUTTON_CONTAINER_SPACING);
+        this.holdButtonContainer.setSpacing(FPS_SLIDER_CONTAINER_SPACING);
         this.hboxContainer.setSpacing(HBOX_CONTAINER_SPACING);
         
         this.fpsSliderContainer.getChildren().addAll(this.fpsLabel, this.fpsSlider);
         this.audioButtonContainer.getChildren().addAll(this.btAddSound, this.btRemoveSound);
-        this.hboxContainer.getChildren().addAll(fpsSliderContainer, audioButtonContainer);
+        this.holdButtonContainer.getChildren().addAll(this.holdLabel, this.btDecreaseHold, this.btIncreaseHold);
+        this.hboxContainer.getChildren().addAll(fpsSliderContainer, audioButtonContainer, holdButtonContainer);
         
         //finally add the hboxContainer to this object
         this.getChildren().add(hboxContainer);
@@ -105,7 +121,6 @@ public class FpsAudioChoicePane extends StackPane{
              //Either remove sound or add sound button is pressed
             Button eventSource = (Button)e.getSource();
             EditableImage selectedEditableImage = editScreen.getSelectedImage();
-            SmallImage selectedSmallImage = selectedEditableImage.getSmallImage();
             
             if(eventSource.equals(btAddSound)){
                 Stage editScreenStage = editScreen.getPrimaryStage();
@@ -114,16 +129,13 @@ public class FpsAudioChoicePane extends StackPane{
                     
                     file = fc.showOpenDialog(editScreenStage);
                     Database.addMediaToEditableImage(selectedEditableImage , file); 
-                    selectedEditableImage.setAudio(file.getAbsolutePath());
-                    //Update the smallImage's audio state
-                    selectedSmallImage.setSoundState(true);
+                    selectedEditableImage.setAudio(file.getAbsolutePath()); //frame updates the smallImage's audio state
                 }
 
             }
             else{
                 //remove sound
-                selectedEditableImage.removeAudio();
-                selectedSmallImage.setSoundState(false);
+                selectedEditableImage.removeAudio(); //frame updates the smallImage's audio state
             }
         }
     }
@@ -0,0 +1,407 @@
+package stopmotioneditor;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.media.Media;
+import javafx.scene.shape.Polyline;
+
+/**
+ * This class represents a single frame of a project without any JavaFX node: file path, index, drawings, media and filter.
+ * Project keeps its frames in an ArrayList of this class. The EditableImage and SmallImage of a frame are
+ * created only when they are displayed, and the EditableImage is released when the frame
+ * is far from the selected one. Frames are played from their pixels and drawings directly, see PlaybackBuffer. Drawings are kept here so nothing is lost when the nodes are released
+ */
+public class Frame {
+    public static final int MAX_HOLD_COUNT = 99;
+
+    private Project project;
+    private String filePath; //URI string of the image file, null if the frame is not backed by a file
+    private int index; //must be updated during deletion etc. through Project.updateIndexesOfImages
+    private int holdCount = 1; //number of frame durations this frame stays on the screen, so a pose is held without copying it
+    private ArrayList<Polyline> lines = new ArrayList<>(); //drawings in EditableImage coordinates, not contained in any pane
+    private String mediaFilePath;
+    private Media audio; //played when the frame is displayed during the animation, players are created by the AudioScheduler
+    private Image sourceImage; //pixels of a frame that has no file, null otherwise
+    private Image filteredImage; //pixels with a filter applied, null if no filter is applied
+    private boolean isLoaded; //false while the ProjectLoader is still decoding the pixels of this frame
+    private boolean isFailed; //true if the ProjectLoader couldn't decode the pixels, nodes keep the placeholder
+    private ImageProbe.ImageInfo imageInfo; //size read from the file header, null until it is needed
+    private int version; //incremented whenever the pixels or drawings change, composites of this frame compare it, see OnionSkin
+    private Image flatThumbnail; //thumbnail with the drawings drawn into it, null until it is drawn
+    private int flatThumbnailVersion = -1; //version of the frame flatThumbnail is drawn from
+    private boolean isFlatteningThumbnail; //true while flatThumbnail is being drawn in the background
+
+    //Nodes, created on demand
+    private EditableImage editableImage;
+    private SmallImage smallImage; //SmallImage of the Filmstrip cell that currently shows this frame, null if it is scrolled out
+
+    /**
+     * Creates a frame that is loaded, its nodes display the pixels as soon as they are created
+     * @param filePath URI string of the image file
+     */
+    public Frame(String filePath, Project project, int index){
+        this(filePath, project, index, true);
+    }
+    /**
+     * @param isLoaded false if the nodes show a placeholder until the ProjectLoader has decoded the pixels
+     */
+    public Frame(String filePath, Project project, int index, boolean isLoaded){
+        this.filePath = filePath;
+        this.project = project;
+        this.index = index;
+        this.isLoaded = isLoaded;
+    }
+    //Creates a frame from pixels that are not backed by a file
+    public Frame(Image sourceImage, Project project, int index){
+        this((String)null, project, index, true);
+        this.sourceImage = sourceImage;
+    }
+
+    /**
+     * Returns the EditableImage of this frame, creates it if it doesn't exist
+     * Invoke when the frame is displayed on the EditScreen
+     */
+    public EditableImage getEditableImage(){
+        if(this.editableImage == null){
+            this.editableImage = new EditableImage(this);
+        }
+        return this.editableImage;
+    }
+    //Returns the SmallImage that currently shows this frame, null if the frame isn't visible in the filmstrip
+    public SmallImage getSmallImage(){
+        return this.smallImage;
+    }
+    //Invoke from SmallImage.setFrame, the SmallImage is updated when the drawings, pixels or audio of this frame change
+    public void bindSmallImage(SmallImage smallImage){
+        this.smallImage = smallImage;
+    }
+    public void unbindSmallImage(SmallImage smallImage){
+        if(this.smallImage == smallImage){
+            this.smallImage = null;
+        }
+    }
+    public boolean hasEditableImage(){
+        return this.editableImage != null;
+    }
+    /**
+     * Releases the EditableImage of this frame with its edit level pixels
+     * Invoke when the frame is far from the selected one, they will be created again when needed
+     */
+    public void recycleNodes(){
+        if(this.editableImage != null){
+            this.editableImage.dispose();
+            this.editableImage = null;
+        }
+    }
+
+    /**
+     * Returns the pixels that are displayed on the EditableImage, exactly its size unless the frame has a filter or no file
+     * Decodes the file through FrameImageCache if it is not in the cache
+     */
+    public Image getEditImage(){
+        if(this.filteredImage != null){
+            return this.filteredImage;
+        }
+        if(this.sourceImage != null){
+            return this.sourceImage;
+        }
+        return FrameImageCache.getEditImage(this.filePath);
+    }
+    /**
+     * Returns the filtered pixels, or the pixels of a frame that has no file. Invoke from the JavaFX thread
+     * @return null if the pixels are decoded from the file
+     */
+    public Image getOwnImage(){
+        return (this.filteredImage != null) ? this.filteredImage : this.sourceImage;
+    }
+    //Returns the pixels that are played on the PlayScreen, same as getEditImage but at the play size
+    public Image getPlayImage(){
+        if(this.filteredImage != null){
+            return this.filteredImage;
+        }
+        if(this.sourceImage != null){
+            return this.sourceImage;
+        }
+        return FrameImageCache.getPlayImage(this.filePath);
+    }
+    /**
+     * Returns the image that is displayed on the SmallImage, invoke from the JavaFX thread
+     * If the frame has drawings they are drawn into the thumbnail in the background, so the SmallImage has no Polyline nodes.
+     * Until that is done the previous flattened thumbnail, or the thumbnail without drawings, is returned and the
+     * SmallImage is updated when the new one is ready
+     */
+    public Image getThumbnailImage(){
+        if(this.lines.isEmpty()){
+            return this.getThumbnailPixels();
+        }
+        if(this.flatThumbnailVersion != this.version){
+            this.flattenThumbnail();
+        }
+        return (this.flatThumbnail != null) ? this.flatThumbnail : this.getThumbnailPixels();
+    }
+    //Returns true if getThumbnailImage doesn't have to decode the file, e.g. false for a frame scrolled far past the prefetched ones
+    public boolean hasThumbnailPixels(){
+        return this.filteredImage != null || this.sourceImage != null || this.filePath == null
+                || FrameImageCache.hasThumbnail(this.filePath);
+    }
+    //Returns the pixels at the SmallImage size without the drawings, invoke from the JavaFX thread
+    private Image getThumbnailPixels(){
+        if(this.filteredImage != null){
+            return this.filteredImage;
+        }
+        if(this.sourceImage != null){
+            return this.sourceImage;
+        }
+        return FrameImageCache.getThumbnail(this.filePath);
+    }
+    //Draws the pixels and drawings into one thumbnail on the decoder threads, once for each committed change
+    //Only the snapshot is read there, it captures the pixels to draw on this thread
+    private void flattenThumbnail(){
+        if(this.isFlatteningThumbnail){
+            return; //drawn again when the current one is done if the frame changed meanwhile
+        }
+        this.isFlatteningThumbnail = true;
+        FrameSnapshot snapshot = new FrameSnapshot(this);
+        FrameDecoder.execute(() -> {
+            Image flattened = null;
+            try{
+                flattened = snapshot.flatten(snapshot.getThumbnail(), (int)FinalImage.SMALL_IMAGE_WIDTH, (int)FinalImage.SMALL_IMAGE_HEIGHT,
+                        EditableImage.SMALL_IMAGE_EDITABLE_IMAGE_RATIO);
+            }
+            catch(RuntimeException ex){
+                System.out.println("Thumbnail drawing error");
+                System.out.println(ex);
+            }
+            Image result = flattened;
+            Platform.runLater(() -> {
+                this.isFlatteningThumbnail = false;
+                if(result != null){
+                    this.flatThumbnail = result;
+                    this.flatThumbnailVersion = snapshot.getVersion();
+                }
+                if(this.smallImage != null && (result != null || this.flatThumbnailVersion != this.version)){
+                    this.smallImage.setImage(this.getThumbnailImage()); //draws it again if the frame changed meanwhile
+                }
+            });
+        });
+    }
+    /**
+     * Sets the filtered pixels of this frame and displays them on every node of the frame
+     * @param filteredImage null to remove the filter
+     */
+    public void setFilteredImage(Image filteredImage){
+        this.filteredImage = filteredImage;
+        this.markChanged();
+        if(!this.isLoaded){
+            return; //nodes still show the placeholder, they will show the filter when loaded
+        }
+        if(this.editableImage != null){
+            this.editableImage.setImage(this.getEditImage());
+        }
+        if(this.smallImage != null){
+            this.smallImage.setImage(this.getThumbnailImage());
+        }
+    }
+    public Image getFilteredImage(){
+        return this.filteredImage;
+    }
+    /**
+     * Returns the size of this frame's file, read from its header without decoding it
+     * @return null if the frame has no file or the file is not a valid image
+     */
+    public ImageProbe.ImageInfo getImageInfo(){
+        if(this.imageInfo == null && this.filePath != null){
+            this.imageInfo = ImageProbe.probe(getFile(this.filePath));
+        }
+        return this.imageInfo;
+    }
+    //Returns a blank image with the ratio of this frame, nodes show it until the frame is loaded so the layout doesn't change
+    public Image getPlaceholder(){
+        ImageProbe.ImageInfo info = this.getImageInfo();
+        if(info == null){
+            return FrameImageCache.getPlaceholder();
+        }
+        return FrameImageCache.getPlaceholder(info.getAspectRatio());
+    }
+    /**
+     * Invoke from the JavaFX thread when the ProjectLoader has decoded the pixels of this frame
+     * Existing nodes replace their placeholder with the decoded pixels and display the drawings
+     */
+    public void setLoaded(){
+        this.isLoaded = true;
+        this.isFailed = false;
+        this.markChanged();
+        if(this.editableImage != null){
+            this.editableImage.showLoadedFrame();
+        }
+        if(this.smallImage != null){
+            this.smallImage.setFrame(this); //displays the thumbnail and drawings
+        }
+    }
+    public boolean isLoaded(){
+        return this.isLoaded;
+    }
+    /**
+     * Invoke from the JavaFX thread when the ProjectLoader couldn't decode the pixels of this frame
+     * Nodes keep showing the placeholder, the frame is loaded with loadNow if it is copied
+     */
+    public void setFailed(){
+        if(!this.isLoaded){
+            this.isFailed = true;
+        }
+    }
+    public boolean isFailed(){
+        return this.isFailed;
+    }
+    //Returns a number that changes whenever the pixels or drawings of this frame change
+    public int getVersion(){
+        return this.version;
+    }
+    //Counts the change and lets the project know, e.g. so the onion skin of the next frames is drawn again
+    private void markChanged(){
+        this.version++;
+        if(this.project != null){
+            this.project.frameChanged(this);
+        }
+    }
+
+    /**
+     * Adds a completed drawing to this frame and the thumbnail of the SmallImage
+     * Invoke when the mouse is released on the EditableImage
+     */
+    public void addLine(Polyline line){
+        this.lines.add(line);
+        this.markChanged();
+        if(this.smallImage != null){
+            this.smallImage.setImage(this.getThumbnailImage()); //flattened again in the background
+        }
+    }
+    //Returns the last drawing that has been added to this frame, null if there is none
+    public Polyline getLastLine(){
+        if(this.lines.isEmpty()){
+            return null;
+        }
+        return this.lines.get(this.lines.size() - 1);
+    }
+    /**
+     * Removes the drawing at the given index from this frame and the thumbnail of its SmallImage
+     * Invoke when a drawing is right clicked
+     */
+    public void removeLineAtIndex(int lineIndex){
+        this.lines.remove(lineIndex);
+        this.markChanged();
+        if(this.smallImage != null){
+            this.smallImage.setImage(this.getThumbnailImage());
+        }
+    }
+    /**
+     * Returns the drawings, e.g. for scaling them into a FinalImage, drawing them on a StrokeLayer or saving them
+     * The Polylines may be shared with other frames, don't add them to a pane or change their points
+     */
+    public ArrayList<Polyline> getLines(){
+        return this.lines;
+    }
+    //Replaces the drawings, invoke before any node of this frame is created
+    public void setLines(ArrayList<Polyline> lines){
+        this.lines = lines;
+        this.version++;
+    }
+
+    /**
+     * Returns a new frame with the same file, media and filter. Nothing is decoded, the copy shows the same Image objects.
+     * Drawings are shared: the copy gets its own list holding the same Polylines.
+     * This is safe since a Polyline is never changed or added to a pane after it is added to a frame, lines are only added or removed.
+     * Invoke when frames are copied from the ImageOrderingChoicePane, the frame must be loaded
+     */
+    public Frame copy(){
+        Frame copiedFrame = new Frame(this.filePath, this.project, this.index, this.isLoaded);
+        copiedFrame.sourceImage = this.sourceImage;
+        copiedFrame.filteredImage = this.filteredImage;
+        copiedFrame.mediaFilePath = this.mediaFilePath;
+        copiedFrame.imageInfo = this.imageInfo;
+        copiedFrame.holdCount = this.holdCount;
+        copiedFrame.lines = new ArrayList<>(this.lines);
+        return copiedFrame;
+    }
+
+    /**
+     * Invoke when user sets the sound of this frame
+     * @param filePath of the sound obtained from user
+     * May throw exception no exception handling here
+     */
+    public void setAudio(String filePath){
+        this.audio = new Media(new File(filePath).toURI().toString()); //no player is created until the animation is played
+        if(this.smallImage != null){
+            this.smallImage.setSoundState(true);
+        }
+    }
+    /**
+     * @return true if audio is removed successfully
+     * false if no audio exists
+     */
+    public boolean removeAudio(){
+        boolean value = false;
+        if(this.audio != null){
+            this.audio = null;
+            value = true;
+        }
+        if(this.smallImage != null){
+            this.smallImage.setSoundState(false);
+        }
+        return value;
+    }
+    public boolean hasAudio(){
+        return this.audio != null;
+    }
+    //Returns the audio of this frame, null if it doesn't exist
+    public Media getAudio(){
+        return this.audio;
+    }
+
+    public int getIndex(){
+        return this.index;
+    }
+    public void setIndex(int index){
+        this.index = index;
+    }
+    public int getHoldCount(){
+        return this.holdCount;
+    }
+    /**
+     * Sets how many frame durations this frame is displayed for when played, the filmstrip label shows it
+     * @param holdCount between 1 and MAX_HOLD_COUNT
+     */
+    public void setHoldCount(int holdCount){
+        this.holdCount = Math.max(1, Math.min(MAX_HOLD_COUNT, holdCount));
+        if(this.smallImage != null){
+            this.smallImage.updateIndexLabel();
+        }
+    }
+    public Project getProject(){
+        return this.project;
+    }
+    public void setProject(Project project){
+        this.project = project;
+    }
+    public String getFilePath(){
+        return this.filePath;
+    }
+    //filePath is a URI string, except frames from Database.addNewImagesToProject which use plain paths
+    private static File getFile(String filePath){
+        try{
+            return new File(URI.create(filePath));
+        }
+        catch(IllegalArgumentException ex){
+            return new File(filePath);
+        }
+    }
+    public String getMediaFilePath(){
+        return this.mediaFilePath;
+    }
+    public void setMediaFilePath(String mediaFilePath){
+        this.mediaFilePath = mediaFilePath;
+    }
+}
@@ -0,0 +1,115 @@
+package stopmotioneditor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import javafx.application.Platform;
+
+/**
+ * This class holds the thread pool that decodes images on every core of the machine.
+ * Opening, playing and importing all decode through here instead of the JavaFX or Swing thread.
+ * Frames that are decoded for the filmstrip are handed back to the JavaFX thread in index order
+ */
+public final class FrameDecoder {
+    public static final int DECODER_THREAD_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    //Fixed number of threads, so no more images are decoded at the same time than there are cores
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(DECODER_THREAD_COUNT, runnable -> {
+        Thread thread = new Thread(runnable, "FrameDecoder");
+        thread.setDaemon(true); //don't keep the application alive after the stages are closed
+        return thread;
+    });
+
+    private FrameDecoder(){} //no instances, only static methods
+
+    //Runs the given task on the decoder threads, used by the filmstrip, scrubber and onion skin
+    public static void execute(Runnable task){
+        EXECUTOR.execute(task);
+    }
+    //Runs the given task on the decoder threads and returns its result later, used by the PlaybackBuffer
+    public static <T> Future<T> submit(Callable<T> task){
+        return EXECUTOR.submit(task);
+    }
+    /**
+     * Writes the thumbnail, edit and play levels of the given project images in parallel and returns immediately.
+     * The index is saved once the last image is done. Invoke after the images are copied into their project folder
+     */
+    public static void createImageLevels(ArrayList<File> files){
+        if(files.isEmpty()){
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(files.size());
+        for(File file : files){
+            EXECUTOR.execute(() -> {
+                try{
+                    ThumbnailStore.createImageLevels(file);
+                }
+                catch(RuntimeException ex){
+                    System.out.println("Frame decode error");
+                    System.out.println(ex);
+                }
+                if(remaining.decrementAndGet() == 0){
+                    ThumbnailStore.flush();
+                }
+            });
+        }
+    }
+    /**
+     * Decodes the thumbnails of new frames that have no drawings or media yet and returns immediately.
+     * Each frame is loaded on the JavaFX thread once it and every frame before it are decoded, so the filmstrip fills in order
+     * @param frames frames that are not loaded, in index order
+     */
+    public static void loadNewFrames(ArrayList<Frame> frames){
+        OrderedHandoff handoff = new OrderedHandoff(frames);
+        for(int i = 0; i < frames.size(); i++){
+            int position = i;
+            Frame frame = frames.get(i);
+            EXECUTOR.execute(() -> {
+                try{
+                    FrameImageCache.getThumbnail(frame.getFilePath());
+                }
+                catch(RuntimeException ex){
+                    System.out.println("Frame decode error");
+                    System.out.println(ex);
+                }
+                handoff.deliver(position); //a failed frame still keeps its place so the frames after it aren't blocked
+            });
+        }
+    }
+
+    /**
+     * This class passes decoded frames to the JavaFX thread in index order, whichever order they are decoded in.
+     * Platform.runLater runs in submission order, so collecting the decoded prefix while holding the lock is enough
+     */
+    private static class OrderedHandoff {
+        private ArrayList<Frame> frames;
+        private boolean[] isDecoded;
+        private int nextPosition = 0; //first frame that hasn't been handed to the JavaFX thread
+
+        OrderedHandoff(ArrayList<Frame> frames){
+            this.frames = new ArrayList<>(frames);
+            this.isDecoded = new boolean[frames.size()];
+        }
+        synchronized void deliver(int position){
+            this.isDecoded[position] = true;
+            ArrayList<Frame> readyFrames = new ArrayList<>();
+            while(this.nextPosition < this.isDecoded.length && this.isDecoded[this.nextPosition]){
+                readyFrames.add(this.frames.get(this.nextPosition));
+                this.nextPosition++;
+            }
+            if(!readyFrames.isEmpty()){
+                Platform.runLater(() -> {
+                    for(Frame frame : readyFrames){
+                        if(!frame.isLoaded()){
+                            frame.setLoaded();
+                        }
+                    }
+                });
+            }
+        }
+    }
+}
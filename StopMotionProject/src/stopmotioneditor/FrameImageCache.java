@@ -0,0 +1,229 @@
+package stopmotioneditor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * This class holds the decoded images of the frames so that every file is decoded only once for each view size.
+ * Images are decoded at the edit level (EditableImage), play level (PlayScreen) or thumbnail level (SmallImage),
+ * read from the ThumbnailStore when possible. Edit and play levels are kept within a byte budget, least recently used ones are evicted first
+ */
+public final class FrameImageCache {
+    public static final long DEFAULT_BYTE_BUDGET = Runtime.getRuntime().maxMemory() / 4; //a quarter of the heap
+    //system property that overrides the budget in bytes, e.g. -Dstopmotioneditor.cacheBytes=536870912 in the VM options
+    public static final String BYTE_BUDGET_PROPERTY = "stopmotioneditor.cacheBytes";
+    public static final int BYTES_PER_PIXEL = 4; //decoded images are stored as 32 bit pixels
+
+    //filePath + level size -> decoded image, filePaths are the URI strings that are passed to the Image constructor
+    //access ordered, so the first entry is always the least recently used one. Guarded by FrameImageCache.class
+    private static final LinkedHashMap<String, Image> IMAGES = new LinkedHashMap<>(16, 0.75f, true);
+    //filePath -> image decoded directly at the small image size, used by the filmstrip
+    private static final ConcurrentHashMap<String, Image> THUMBNAILS = new ConcurrentHashMap<>();
+    //blank 16:9 image shown until a frame is decoded, tiny since ImageView scales it to the fit size
+    private static final Image PLACEHOLDER = new WritableImage(16, 9);
+    public static final int PLACEHOLDER_HEIGHT = 9;
+    //width -> blank image of that width and PLACEHOLDER_HEIGHT, so placeholders take the place of the real image in the layout
+    private static final ConcurrentHashMap<Integer, Image> SIZED_PLACEHOLDERS = new ConcurrentHashMap<>();
+
+    private static long byteBudget = readByteBudget();
+    private static long usedBytes = 0;
+    //statistics
+    private static long hitCount = 0;
+    private static long missCount = 0;
+    private static long evictionCount = 0;
+
+    private FrameImageCache(){} //no instances, only static methods
+
+    //Returns the image of the given file at the EditableImage size
+    public static Image getEditImage(String filePath){
+        return getImage(filePath, EditableImage.EDITABLE_IMAGE_WIDTH, EditableImage.EDITABLE_IMAGE_HEIGHT);
+    }
+    //Returns the image of the given file at the play size of the PlayScreen
+    public static Image getPlayImage(String filePath){
+        return getImage(filePath, FinalImage.BIG_IMAGE_WIDTH, FinalImage.BIG_IMAGE_HEIGHT);
+    }
+    /**
+     * Returns the decoded image of the given file that fits in width x height, decodes the file if it is not in the cache
+     * The stored level of the ThumbnailStore is read if it exists, otherwise the file is decoded at that size
+     * @param filePath URI string of the image file
+     * @return decoded image, ratio is preserved
+     */
+    public static Image getImage(String filePath, double width, double height){
+        String key = getKey(filePath, width, height);
+        synchronized(FrameImageCache.class){
+            Image image = IMAGES.get(key);
+            if(image != null){
+                hitCount++;
+                return image;
+            }
+            missCount++;
+        }
+        //Decode without holding the lock so the loader threads can decode in parallel
+        Image decodedImage = decode(filePath, width, height);
+        synchronized(FrameImageCache.class){
+            Image existingImage = IMAGES.get(key);
+            if(existingImage != null){
+                return existingImage; //another thread has decoded the same file meanwhile
+            }
+            IMAGES.put(key, decodedImage);
+            usedBytes += getByteSize(decodedImage);
+            evictToBudget();
+        }
+        return decodedImage;
+    }
+    /**
+     * Returns the image from the cache if it is there, otherwise decodes it without adding it to the cache
+     * Used to stream a whole project during playback without evicting the images of the EditScreen
+     */
+    public static Image getImageWithoutCaching(String filePath, double width, double height){
+        synchronized(FrameImageCache.class){
+            Image image = IMAGES.get(getKey(filePath, width, height));
+            if(image != null){
+                hitCount++;
+                return image;
+            }
+            missCount++;
+        }
+        return decode(filePath, width, height);
+    }
+    //Reads the stored level of the ThumbnailStore if it exists, otherwise decodes the file at the given size
+    private static Image decode(String filePath, double width, double height){
+        Image decodedImage = ThumbnailStore.loadLevel(filePath, width, height);
+        if(decodedImage == null){
+            decodedImage = new Image(filePath, width, height, true, true);
+        }
+        return decodedImage;
+    }
+    //true if the image of the given file at the given size is in the cache, doesn't change the usage order
+    public static synchronized boolean contains(String filePath, double width, double height){
+        return IMAGES.containsKey(getKey(filePath, width, height));
+    }
+    /**
+     * Returns the thumbnail of the given file. Images of a project are read from the ThumbnailStore of their folder,
+     * other files are decoded straight at the small image size so the full resolution bitmap is never kept for the filmstrip
+     * @param filePath URI string of the image file
+     * @return image that is at most SMALL_IMAGE_WIDTH x SMALL_IMAGE_HEIGHT, ratio is preserved
+     */
+    public static Image getThumbnail(String filePath){
+        return THUMBNAILS.computeIfAbsent(filePath, path -> {
+            Image storedThumbnail = ThumbnailStore.loadThumbnail(path);
+            if(storedThumbnail != null){
+                return storedThumbnail;
+            }
+            return new Image(path, FinalImage.SMALL_IMAGE_WIDTH, FinalImage.SMALL_IMAGE_HEIGHT, true, true);
+        });
+    }
+    //true if the thumbnail of the given file is decoded
+    public static boolean hasThumbnail(String filePath){
+        return THUMBNAILS.containsKey(filePath);
+    }
+    //Returns the blank image that is shown while a frame is being loaded
+    public static Image getPlaceholder(){
+        return PLACEHOLDER;
+    }
+    /**
+     * Returns a blank image with the given aspect ratio, used when the size of a frame is known from its header
+     * @param aspectRatio width / height of the frame
+     */
+    public static Image getPlaceholder(double aspectRatio){
+        int width = Math.max(1, (int)Math.round(aspectRatio * PLACEHOLDER_HEIGHT));
+        return SIZED_PLACEHOLDERS.computeIfAbsent(width, w -> new WritableImage(w, PLACEHOLDER_HEIGHT));
+    }
+    /**
+     * Invoke when the file on the given path is changed or the frame is no longer used
+     * @param filePath URI string of the image file
+     */
+    public static void remove(String filePath){
+        synchronized(FrameImageCache.class){
+            Iterator<Map.Entry<String, Image>> iterator = IMAGES.entrySet().iterator();
+            while(iterator.hasNext()){
+                Map.Entry<String, Image> entry = iterator.next();
+                if(entry.getKey().startsWith(filePath + "@")){ //every level of the file
+                    iterator.remove();
+                    usedBytes -= getByteSize(entry.getValue());
+                }
+            }
+        }
+        THUMBNAILS.remove(filePath);
+    }
+    //Invoke when a project is closed, releases every decoded image
+    public static void clear(){
+        synchronized(FrameImageCache.class){
+            IMAGES.clear();
+            usedBytes = 0;
+        }
+        THUMBNAILS.clear();
+    }
+    public static synchronized int size(){
+        return IMAGES.size();
+    }
+    /**
+     * Sets the maximum number of bytes that edit and play level images may occupy, evicts images if necessary
+     * The budget starts from the BYTE_BUDGET_PROPERTY system property, this changes it while running
+     * @param bytes new budget
+     */
+    public static synchronized void setByteBudget(long bytes){
+        byteBudget = bytes;
+        evictToBudget();
+    }
+    //Returns the budget given with the BYTE_BUDGET_PROPERTY system property, DEFAULT_BYTE_BUDGET if it isn't given or isn't valid
+    private static long readByteBudget(){
+        String value = System.getProperty(BYTE_BUDGET_PROPERTY);
+        if(value == null){
+            return DEFAULT_BYTE_BUDGET;
+        }
+        try{
+            long bytes = Long.parseLong(value.trim());
+            if(bytes > 0){
+                return bytes;
+            }
+        }
+        catch(NumberFormatException ex){
+        }
+        System.out.println("Invalid " + BYTE_BUDGET_PROPERTY + ": " + value + ", a quarter of the heap is used");
+        return DEFAULT_BYTE_BUDGET;
+    }
+    public static synchronized long getByteBudget(){
+        return byteBudget;
+    }
+    public static synchronized long getUsedBytes(){
+        return usedBytes;
+    }
+    public static synchronized long getHitCount(){
+        return hitCount;
+    }
+    public static synchronized long getMissCount(){
+        return missCount;
+    }
+    public static synchronized long getEvictionCount(){
+        return evictionCount;
+    }
+    //Returns the statistics of the cache in a single line, used for logging
+    public static synchronized String getStatistics(){
+        return "FrameImageCache: " + IMAGES.size() + " images, " + (usedBytes / (1024 * 1024)) + "/" + (byteBudget / (1024 * 1024)) + " MB, "
+                + hitCount + " hits, " + missCount + " misses, " + evictionCount + " evictions";
+    }
+    //Returns the approximate number of bytes the decoded pixels of the image occupy
+    public static long getByteSize(Image image){
+        return (long)image.getWidth() * (long)image.getHeight() * BYTES_PER_PIXEL;
+    }
+
+    private static String getKey(String filePath, double width, double height){
+        return filePath + "@" + (int)width + "x" + (int)height;
+    }
+    //Removes the least recently used images until the used bytes fit the budget, call while holding the lock
+    private static void evictToBudget(){
+        Iterator<Map.Entry<String, Image>> iterator = IMAGES.entrySet().iterator();
+        //always keep the most recently used image, even if it is bigger than the whole budget
+        while(usedBytes > byteBudget && IMAGES.size() > 1 && iterator.hasNext()){
+            Image evictedImage = iterator.next().getValue();
+            iterator.remove();
+            usedBytes -= getByteSize(evictedImage);
+            evictionCount++;
+        }
+    }
+}
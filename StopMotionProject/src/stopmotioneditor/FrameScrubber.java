@@ -0,0 +1,117 @@
+package stopmotioneditor;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javafx.animation.AnimationTimer;
+
+/**
+ * This class handles the selection of frames on the EditScreen while the user clicks or steps through the filmstrip.
+ * The selection rectangle moves immediately, but the EditableImage is swapped at most once per animation pulse,
+ * so only the last selected frame of the pulse is displayed. The edit level pixels of the frames around the selection
+ * are decoded in the background, so the next frames are already in the FrameImageCache when they are selected
+ */
+public class FrameScrubber {
+    public static final int PREFETCH_RADIUS = 3; //frames on each side of the selection that are decoded beforehand, smaller than Project.RESIDENT_IMAGE_RADIUS
+
+    private Project project;
+    private EditScreen editScreen;
+    private Filmstrip filmstrip;
+    private boolean isPending = false; //true if the selection changed after the EditableImage was last swapped
+    private Set<String> decodingFiles = ConcurrentHashMap.newKeySet(); //files that are being prefetched, so they aren't queued twice
+    private AnimationTimer pulse = new AnimationTimer(){
+        @Override
+        public void handle(long now){
+            flush();
+        }
+    };
+
+    public FrameScrubber(Project project, EditScreen editScreen, Filmstrip filmstrip){
+        this.project = project;
+        this.editScreen = editScreen;
+        this.filmstrip = filmstrip;
+    }
+    /**
+     * Selects the frame at the given index, the EditableImage is displayed on the next pulse
+     * Invoke when a SmallImage is clicked, no bounds checking
+     * @param index index of the frame to be selected
+     */
+    public void select(int index){
+        int prevIndex = this.project.getSelectedImageIndex();
+        if(index == prevIndex){
+            return;
+        }
+        this.setSelected(prevIndex, false);
+        this.project.setSelectedImageIndex(index);
+        this.setSelected(index, true);
+
+        if(!this.isPending){
+            this.isPending = true;
+            this.pulse.start(); //stopped again after the swap, so the timer doesn't run while nothing is selected
+        }
+    }
+    /**
+     * Selects the frame next to the selected one and scrolls the filmstrip to it
+     * @param step 1 for the next frame, -1 for the previous one
+     */
+    public void step(int step){
+        int index = this.project.getSelectedImageIndex() + step;
+        if(index < 0 || index >= this.project.getNumberOfImages()){
+            return;
+        }
+        this.select(index);
+        this.filmstrip.showFrame(index);
+    }
+    /**
+     * Displays the selected frame now if it isn't displayed yet
+     * Invoke before an operation that needs the EditableImage to match the selection, e.g. an edit of the project
+     */
+    public void flush(){
+        if(!this.isPending){
+            return;
+        }
+        this.isPending = false;
+        this.pulse.stop();
+        int index = this.project.getSelectedImageIndex();
+        if(index >= 0 && index < this.project.getNumberOfImages()){
+            this.editScreen.updateEditableImagePane(index);
+            this.prefetchNeighbours(index);
+        }
+    }
+    //Decodes the edit level pixels of the frames around the given index that aren't in the cache
+    public void prefetchNeighbours(int index){
+        int start = Math.max(0, index - PREFETCH_RADIUS);
+        int end = Math.min(this.project.getNumberOfImages() - 1, index + PREFETCH_RADIUS);
+        for(int i = start; i <= end; i++){
+            Frame frame = this.project.getFrame(i);
+            String filePath = frame.getFilePath();
+            if(i == index || filePath == null || this.isDecoded(filePath) || !this.decodingFiles.add(filePath)){
+                continue;
+            }
+            FrameDecoder.execute(() -> {
+                try{
+                    //the selection may have moved on while this was queued, frames that are far now aren't decoded
+                    if(this.project.isNearSelectedImage(frame.getIndex())){
+                        FrameImageCache.getEditImage(filePath);
+                    }
+                }
+                catch(RuntimeException ex){
+                    System.out.println("Frame prefetch error");
+                    System.out.println(ex);
+                }
+                finally{
+                    this.decodingFiles.remove(filePath);
+                }
+            });
+        }
+    }
+    private boolean isDecoded(String filePath){
+        return FrameImageCache.contains(filePath, EditableImage.EDITABLE_IMAGE_WIDTH, EditableImage.EDITABLE_IMAGE_HEIGHT);
+    }
+    //Updates the selection rectangle of the frame at the given index if it is displayed on the filmstrip
+    private void setSelected(int index, boolean isSelected){
+        Frame frame = this.project.getFrame(index);
+        if(frame != null && frame.getSmallImage() != null){
+            frame.getSmallImage().setSelected(isSelected);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package stopmotioneditor;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import javafx.collections.ObservableList;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.shape.Polyline;
+
+/**
+ * This class holds a copy of the drawings of a frame so the frame can be drawn into a bitmap in the background.
+ * Polylines belong to the JavaFX thread, so their points are copied when the snapshot is taken and only the copies are
+ * read while drawing. The filtered or source pixels of the frame are captured aswell, otherwise only the file path is read
+ * in the background. Used for the flattened thumbnails of the filmstrip and the onion skin
+ */
+public class FrameSnapshot {
+    private Frame frame;
+    private int version; //version of the frame when the snapshot is taken
+    private String filePath;
+    private Image ownImage; //filtered or source pixels of the frame, null if they are decoded from the file
+    private ArrayList<double[]> points = new ArrayList<>();
+    private ArrayList<java.awt.Color> colors = new ArrayList<>();
+    private ArrayList<Float> strokeWidths = new ArrayList<>();
+
+    //Invoke from the JavaFX thread
+    public FrameSnapshot(Frame frame){
+        this.frame = frame;
+        this.version = frame.getVersion();
+        this.filePath = frame.getFilePath();
+        this.ownImage = frame.getOwnImage();
+        for(Polyline line : frame.getLines()){
+            ObservableList<Double> coordinates = line.getPoints();
+            double[] linePoints = new double[coordinates.size()];
+            for(int i = 0; i < linePoints.length; i++){
+                linePoints[i] = coordinates.get(i);
+            }
+            this.points.add(linePoints);
+            this.colors.add(toAwtColor(line.getStroke()));
+            this.strokeWidths.add((float)line.getStrokeWidth());
+        }
+    }
+    public Frame getFrame(){
+        return this.frame;
+    }
+    public int getVersion(){
+        return this.version;
+    }
+    public boolean hasLines(){
+        return !this.points.isEmpty();
+    }
+    //Returns the pixels of the frame at the EditableImage size, decodes the file through FrameImageCache. Can be invoked from any thread
+    public Image getEditImage(){
+        return (this.ownImage != null) ? this.ownImage : FrameImageCache.getEditImage(this.filePath);
+    }
+    //Returns the pixels of the frame at the play size, a decoded file isn't kept in the FrameImageCache. Can be invoked from any thread
+    public Image decodePlayImage(){
+        return (this.ownImage != null) ? this.ownImage : FrameImageCache.getImageWithoutCaching(this.filePath, FinalImage.BIG_IMAGE_WIDTH, FinalImage.BIG_IMAGE_HEIGHT);
+    }
+    //Returns the pixels of the frame at the SmallImage size, same as getEditImage
+    public Image getThumbnail(){
+        return (this.ownImage != null) ? this.ownImage : FrameImageCache.getThumbnail(this.filePath);
+    }
+    /**
+     * Draws the given pixels and the drawings of the snapshot, can be invoked from any thread
+     * @param graphics graphics of the target bitmap
+     * @param pixels pixels of the frame, nothing is drawn for them if null
+     * @param imageWidth width the pixels are scaled to
+     * @param imageHeight height the pixels are scaled to
+     * @param ratio ratio of the target to the EditableImage, drawings are in EditableImage coordinates
+     * @param opacity 1 for an opaque frame
+     */
+    public void draw(Graphics2D graphics, Image pixels, double imageWidth, double imageHeight, double ratio, double opacity){
+        graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, (float)opacity));
+        if(pixels != null && !pixels.isError()){
+            graphics.drawImage(SwingFXUtils.fromFXImage(pixels, null), 0, 0, (int)Math.round(imageWidth), (int)Math.round(imageHeight), null);
+        }
+        for(int i = 0; i < this.points.size(); i++){
+            double[] linePoints = this.points.get(i);
+            if(linePoints.length < 4){
+                continue; //a single point isn't displayed by a Polyline either
+            }
+            Path2D.Double path = new Path2D.Double();
+            path.moveTo(linePoints[0] * ratio, linePoints[1] * ratio);
+            for(int j = 2; j + 1 < linePoints.length; j += 2){
+                path.lineTo(linePoints[j] * ratio, linePoints[j + 1] * ratio);
+            }
+            graphics.setColor(this.colors.get(i));
+            //same caps and joins as a Polyline
+            graphics.setStroke(new BasicStroke((float)(this.strokeWidths.get(i) * ratio), BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 10));
+            graphics.draw(path);
+        }
+    }
+    /**
+     * Draws the frame into a new bitmap of the given size, the pixels keep their ratio like in a FinalImage
+     * Invoke from the background, the pixels should already be decoded at about this size
+     * @param pixels pixels of the frame
+     * @param ratio ratio of the bitmap to the EditableImage
+     */
+    public Image flatten(Image pixels, int width, int height, double ratio){
+        BufferedImage bitmap = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D graphics = createGraphics(bitmap);
+        double imageWidth = width;
+        double imageHeight = height;
+        if(pixels != null && pixels.getWidth() > 0 && pixels.getHeight() > 0){
+            double scale = Math.min(width / pixels.getWidth(), height / pixels.getHeight());
+            imageWidth = pixels.getWidth() * scale;
+            imageHeight = pixels.getHeight() * scale;
+        }
+        this.draw(graphics, pixels, imageWidth, imageHeight, ratio, 1);
+        graphics.dispose();
+        return SwingFXUtils.toFXImage(bitmap, null);
+    }
+    //Returns antialiased graphics for the given bitmap
+    public static Graphics2D createGraphics(BufferedImage bitmap){
+        Graphics2D graphics = bitmap.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        return graphics;
+    }
+    private static java.awt.Color toAwtColor(Paint paint){
+        if(!(paint instanceof Color)){
+            return java.awt.Color.BLACK; //drawings are made with colors only
+        }
+        Color color = (Color)paint;
+        return new java.awt.Color((float)color.getRed(), (float)color.getGreen(), (float)color.getBlue(), (float)color.getOpacity());
+    }
+}
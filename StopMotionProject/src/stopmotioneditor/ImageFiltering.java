@@ -9,7 +9,6 @@ import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.WritableImage;
-import javafx.scene.image.Image;
 
 
 /**
@@ -25,7 +24,6 @@ public class ImageFiltering {
     static BufferedImage image;
     static int width; 
     static int height; 
-    static Image prevImage;
 
     public ImageFiltering(){}  //empty constructor 
     
@@ -37,7 +35,6 @@ public class ImageFiltering {
         
     }
     public static void redFiltering(EditableImage input){
-        prevImage = input.getImage();
         Filtering(input);
 
         for (int y = 0 ; y < height ; y++){                //these nested loops analyzes all pixels and 
@@ -49,10 +46,9 @@ public class ImageFiltering {
             }
         }
          WritableImage fxImage = SwingFXUtils.toFXImage(image, null);
-         input.setImage(fxImage);      //compiler just want this and I add it all these
+         input.getFrame().setFilteredImage(fxImage);      //compiler just want this and I add it all these
     }                                                       //try catch statements
     public static void greenFiltering(EditableImage input){
-        prevImage = input.getImage();
         Filtering(input);
 
         for (int y = 0 ; y < height ; y++){
@@ -64,12 +60,11 @@ public class ImageFiltering {
             }
         }
         WritableImage fxImage = SwingFXUtils.toFXImage(image, null);
-        input.setImage(fxImage);
+        input.getFrame().setFilteredImage(fxImage); //frame displays it on its small image aswell
     }
 
     public static void blueFiltering(EditableImage input){
 
-        prevImage = input.getImage();
         Filtering(input);
         
 
@@ -82,12 +77,11 @@ public class ImageFiltering {
             }
         }
         WritableImage fxImage = SwingFXUtils.toFXImage(image, null);
-        input.setImage(fxImage);
+        input.getFrame().setFilteredImage(fxImage); //frame displays it on its small image aswell
     }
 
     public static void grayFiltering(EditableImage input){
 
-        prevImage = input.getImage();
         Filtering(input);
 
 
@@ -103,10 +97,10 @@ public class ImageFiltering {
             }
         }
         WritableImage fxImage = SwingFXUtils.toFXImage(image, null);
-        input.setImage(fxImage);
+        input.getFrame().setFilteredImage(fxImage); //frame displays it on its small image aswell
     }  
     public static void noFilter(EditableImage input){
-        input.setImage(prevImage);
+        input.getFrame().setFilteredImage(null); //frame displays its original pixels again
         
     }
 }
\ No newline at end of file
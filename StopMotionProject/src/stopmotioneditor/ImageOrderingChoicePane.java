@@ -208,13 +208,13 @@ public class ImageOrderingChoicePane extends StackPane {
         // Specifying the supported extensions
         String[] extensions = new String[] { "jpg", "jpeg", "png"}; 
 
-        // Filter to identify images based on their extensions
+        // Filter to identify images based on their extensions and headers
         FilenameFilter filter = new FilenameFilter() {
             @Override
             public boolean accept(File file, String name) {
                 for (String ext : extensions) {
                     if (name.endsWith("." + ext)) {
-                        return true;
+                        return ImageProbe.isValidImage(new File(file, name));  // only the header is read, corrupt files are skipped
                     }
                 }
                 return false;
@@ -257,18 +257,19 @@ public class ImageOrderingChoicePane extends StackPane {
                 File folder = fc.showDialog(editScreenStage);
                 
                 
-                ArrayList<EditableImage> addedImages = new ArrayList<>();
+                ArrayList<Frame> addedFrames = new ArrayList<>();
                 ArrayList<File> addedImageFiles = ImageOrderingChoicePane.getAddedFiles(folder);
                 
                 for(int i = 0; i < addedImageFiles.size(); i++){
                     File file = addedImageFiles.get(i);
-                    Image img = new Image(file.toURI().toString());
                     
-                    EditableImage newImage = new EditableImage(img, project, 0); //index will be set later !!!
-                    addedImages.add(newImage);
+                    //Frames are added as placeholders, their thumbnails are decoded by the FrameDecoder
+                    Frame newFrame = new Frame(file.toURI().toString(), project, 0, false); //index will be set later !!!
+                    addedFrames.add(newFrame);
                 }
                 
-                project.addNewImages(addedImages);
+                project.addNewImages(addedFrames);
+                FrameDecoder.loadNewFrames(addedFrames);
             }
             else if(eventSource.equals(btDelete)){
                 //Try to delete specified images with respect to given input
@@ -354,7 +355,7 @@ else if(eventSource.equals(btAddImage)){
                 user = MainMenuFrame.user;
                 String userName = user.getUsername();
               
-                ArrayList<EditableImage> addedImages = Database.addNewImagesToProject(file, userName, project);
+                ArrayList<Frame> addedImages = Database.addNewImagesToProject(file, userName, project);
                 project.addNewImages(addedImages);
             }
 */
\ No newline at end of file
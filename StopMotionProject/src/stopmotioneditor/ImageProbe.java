@@ -0,0 +1,239 @@
+package stopmotioneditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class reads the size of JPEG and PNG files from their headers without decoding any pixel.
+ * Only the PNG IHDR chunk or the JPEG markers up to the SOF segment are read, plus a few bytes at the end of the file
+ * to make sure it isn't cut off. Used to skip corrupt files on import and to size placeholders before a frame is decoded
+ */
+public final class ImageProbe {
+    public static final int ORIENTATION_NORMAL = 1; //EXIF orientation when the file doesn't specify one
+    public static final int MAX_IMAGE_SIZE = 65535; //larger sides are treated as corrupt headers
+    public static final int END_SEARCH_LENGTH = 1024; //JPEG end marker must be in this many bytes at the end of the file
+
+    private static final byte[] PNG_SIGNATURE = {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
+    private ImageProbe(){} //no instances, only static methods
+
+    /**
+     * This class holds the header data of an image file
+     */
+    public static class ImageInfo {
+        private final int width;  //width of the stored pixels
+        private final int height;
+        private final int orientation; //EXIF orientation 1-8, JavaFX doesn't apply it so width and height are the displayed size
+        private final String format;
+
+        ImageInfo(int width, int height, int orientation, String format){
+            this.width = width;
+            this.height = height;
+            this.orientation = orientation;
+            this.format = format;
+        }
+        public int getWidth(){
+            return this.width;
+        }
+        public int getHeight(){
+            return this.height;
+        }
+        public int getOrientation(){
+            return this.orientation;
+        }
+        //true if the EXIF orientation swaps the sides, i.e. the camera was held vertically
+        public boolean isRotated(){
+            return this.orientation >= 5 && this.orientation <= 8;
+        }
+        public String getFormat(){
+            return this.format;
+        }
+        public double getAspectRatio(){
+            return (double)this.width / this.height;
+        }
+        @Override
+        public String toString(){
+            return this.format + " " + this.width + "x" + this.height + " orientation " + this.orientation;
+        }
+    }
+
+    /**
+     * Reads the header of the given file
+     * @param file JPEG or PNG file
+     * @return header data, null if the file is not a valid JPEG or PNG or it is cut off
+     */
+    public static ImageInfo probe(File file){
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)){
+            ByteBuffer signature = read(channel, 0, PNG_SIGNATURE.length);
+            if(signature == null){
+                return null;
+            }
+            if(startsWith(signature, PNG_SIGNATURE)){
+                return probePng(channel);
+            }
+            if((signature.get(0) & 0xFF) == 0xFF && (signature.get(1) & 0xFF) == 0xD8){
+                return probeJpeg(channel);
+            }
+        }
+        catch(IOException | RuntimeException ex){
+            System.out.println("Image probe error: " + file.getName());
+        }
+        return null;
+    }
+    //true if the given file is a valid JPEG or PNG, invoke to filter files before importing them
+    public static boolean isValidImage(File file){
+        return probe(file) != null;
+    }
+
+    //Reads the IHDR chunk, which must directly follow the signature, and checks the IEND chunk at the end of the file
+    private static ImageInfo probePng(FileChannel channel) throws IOException {
+        ByteBuffer header = read(channel, 8, 16); //length, "IHDR", width, height
+        if(header == null || header.getInt(0) != 13 || header.getInt(4) != 0x49484452){
+            return null;
+        }
+        int width = header.getInt(8);
+        int height = header.getInt(12);
+        ByteBuffer end = read(channel, channel.size() - 12, 12); //length 0, "IEND", crc
+        if(end == null || end.getInt(0) != 0 || end.getInt(4) != 0x49454E44){
+            return null; //cut off file
+        }
+        return createInfo(width, height, ORIENTATION_NORMAL, "png");
+    }
+    //Walks the markers until the first SOF segment, reading the EXIF orientation on the way
+    private static ImageInfo probeJpeg(FileChannel channel) throws IOException {
+        long position = 2;
+        int orientation = ORIENTATION_NORMAL;
+        long fileSize = channel.size();
+        while(position + 4 <= fileSize){
+            ByteBuffer markerBuffer = read(channel, position, 4);
+            if((markerBuffer.get(0) & 0xFF) != 0xFF){
+                return null; //every segment must start with a marker
+            }
+            int marker = markerBuffer.get(1) & 0xFF;
+            if(marker == 0xFF){
+                position++; //fill byte
+                continue;
+            }
+            if(marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)){
+                position += 2; //markers without a length
+                continue;
+            }
+            if(marker == 0xD9 || marker == 0xDA){
+                return null; //end of image or scan data before any SOF
+            }
+            int length = markerBuffer.getShort(2) & 0xFFFF; //includes the 2 length bytes
+            if(length < 2){
+                return null;
+            }
+            if(isStartOfFrame(marker)){
+                ByteBuffer frameHeader = read(channel, position + 4, 5); //precision, height, width
+                if(frameHeader == null || !hasEndMarker(channel)){
+                    return null;
+                }
+                int height = frameHeader.getShort(1) & 0xFFFF;
+                int width = frameHeader.getShort(3) & 0xFFFF;
+                return createInfo(width, height, orientation, "jpeg");
+            }
+            if(marker == 0xE1 && orientation == ORIENTATION_NORMAL){
+                ByteBuffer segment = read(channel, position + 4, length - 2);
+                if(segment != null){
+                    try{
+                        orientation = readExifOrientation(segment);
+                    }
+                    catch(IndexOutOfBoundsException ex){
+                        orientation = ORIENTATION_NORMAL; //broken EXIF doesn't make the image itself invalid
+                    }
+                }
+            }
+            position += 2 + length;
+        }
+        return null;
+    }
+    //SOF0-SOF15 except DHT(C4), JPG(C8) and DAC(CC)
+    private static boolean isStartOfFrame(int marker){
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+    //true if the end of image marker is near the end of the file, some cameras add a few bytes after it
+    private static boolean hasEndMarker(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        int length = (int)Math.min(END_SEARCH_LENGTH, fileSize);
+        ByteBuffer end = read(channel, fileSize - length, length);
+        if(end == null){
+            return false;
+        }
+        for(int i = length - 2; i >= 0; i--){
+            if((end.get(i) & 0xFF) == 0xFF && (end.get(i + 1) & 0xFF) == 0xD9){
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Reads the orientation tag from the first IFD of an APP1 segment
+     * @param segment content of the APP1 segment after its length
+     * @return orientation, ORIENTATION_NORMAL if the segment isn't EXIF or has no orientation
+     */
+    private static int readExifOrientation(ByteBuffer segment){
+        if(segment.limit() < 14 || segment.getInt(0) != 0x45786966 || segment.getShort(4) != 0){ //"Exif\0\0"
+            return ORIENTATION_NORMAL;
+        }
+        segment.position(6);
+        ByteBuffer tiff = segment.slice(); //offsets are relative to the TIFF header
+        short byteOrder = tiff.getShort(0);
+        if(byteOrder == 0x4949){ //"II"
+            tiff.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        else if(byteOrder != 0x4D4D){ //"MM"
+            return ORIENTATION_NORMAL;
+        }
+        long ifdOffset = tiff.getInt(4) & 0xFFFFFFFFL;
+        if(ifdOffset + 2 > tiff.limit()){
+            return ORIENTATION_NORMAL;
+        }
+        int entryCount = tiff.getShort((int)ifdOffset) & 0xFFFF;
+        for(int i = 0; i < entryCount; i++){
+            int entryOffset = (int)ifdOffset + 2 + i * 12; //tag, type, count, value
+            if(entryOffset + 12 > tiff.limit()){
+                break;
+            }
+            if((tiff.getShort(entryOffset) & 0xFFFF) == EXIF_ORIENTATION_TAG){
+                int orientation = tiff.getShort(entryOffset + 8) & 0xFFFF;
+                return (orientation >= 1 && orientation <= 8) ? orientation : ORIENTATION_NORMAL;
+            }
+        }
+        return ORIENTATION_NORMAL;
+    }
+    private static ImageInfo createInfo(int width, int height, int orientation, String format){
+        if(width <= 0 || height <= 0 || width > MAX_IMAGE_SIZE || height > MAX_IMAGE_SIZE){
+            return null;
+        }
+        return new ImageInfo(width, height, orientation, format);
+    }
+    //Reads exactly length bytes from the given position, returns null if the file is shorter
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        if(position < 0 || length < 0 || position + length > channel.size()){
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length); //big endian, same as both formats
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer, position + buffer.position()) < 0){
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+    private static boolean startsWith(ByteBuffer buffer, byte[] prefix){
+        for(int i = 0; i < prefix.length; i++){
+            if(buffer.get(i) != prefix[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,156 @@
+package stopmotioneditor;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import javafx.application.Platform;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.Parent;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.Pane;
+
+/**
+ * This class displays the previous frames of the selected frame at a reduced opacity while drawing (onion skinning).
+ * The previous frames and their drawings are composited into one image in the background, so the EditableImage
+ * only has a single extra ImageView on top of it no matter how many frames are shown.
+ * The composite is drawn again only when one of those frames changes, not while drawing on the selected frame
+ */
+public class OnionSkin {
+    public static final int MIN_DEPTH = 1;
+    public static final int MAX_DEPTH = 5;
+    public static final int INITIAL_DEPTH = 2;
+    public static final double NEAREST_OPACITY = 0.5; //opacity of the previous frame, each frame before it has half the opacity of the next one
+
+    private Project project;
+    private ImageView layer = new ImageView(); //displays the composite above the EditableImage, below its drawings
+    private boolean isEnabled = false;
+    private int depth = INITIAL_DEPTH; //number of previous frames
+    private EditableImage displayedImage; //image the layer is shown on, null if none
+    private ArrayList<Object> compositeKey; //frames and versions the composite in the layer is drawn from
+    private ArrayList<Object> renderingKey; //frames and versions of the composite being drawn in the background, null if none
+
+    public OnionSkin(Project project){
+        this.project = project;
+        this.layer.setFitWidth(EditableImage.EDITABLE_IMAGE_WIDTH);
+        this.layer.setFitHeight(EditableImage.EDITABLE_IMAGE_HEIGHT);
+        this.layer.setMouseTransparent(true); //drawing is still made on the EditableImage below
+    }
+    /**
+     * Shows the onion skin on the given image if it is enabled
+     * Invoke when the EditableImage on the EditScreen changes
+     */
+    public void show(EditableImage image){
+        this.displayedImage = image;
+        this.removeLayer();
+        if(this.isEnabled && image != null){
+            image.getContainer().getChildren().add(1, this.layer); //right above the EditableImage
+            this.update();
+        }
+    }
+    //Turns the onion skin on or off, the last composite is kept so turning it on again for the same frames costs nothing
+    public void setEnabled(boolean isEnabled){
+        this.isEnabled = isEnabled;
+        this.show(this.displayedImage);
+    }
+    public boolean isEnabled(){
+        return this.isEnabled;
+    }
+    //Sets the number of previous frames that are shown
+    public void setDepth(int depth){
+        this.depth = Math.max(MIN_DEPTH, Math.min(MAX_DEPTH, depth));
+        this.update();
+    }
+    public int getDepth(){
+        return this.depth;
+    }
+    /**
+     * Draws the composite again if the given frame is one of the frames it is drawn from
+     * Invoke when the pixels or drawings of a frame change
+     */
+    public void frameChanged(Frame frame){
+        if(this.isEnabled && this.getSourceFrames().contains(frame)){
+            this.update();
+        }
+    }
+    /**
+     * Draws the composite in the background if the previous frames of the displayed image changed since it was drawn
+     * Invoke when frames are added, removed or reordered aswell
+     */
+    public void update(){
+        if(!this.isEnabled || this.displayedImage == null){
+            return;
+        }
+        ArrayList<Frame> sourceFrames = this.getSourceFrames();
+        ArrayList<Object> key = new ArrayList<>();
+        for(Frame frame : sourceFrames){
+            key.add(frame); //frames are compared by identity
+            key.add(frame.getVersion());
+        }
+        if(key.equals(this.compositeKey) || key.equals(this.renderingKey)){
+            return; //already displayed or being drawn
+        }
+        if(sourceFrames.isEmpty()){
+            this.renderingKey = null;
+            this.compositeKey = key;
+            this.layer.setImage(null); //first frame has nothing before it
+            return;
+        }
+        //Polylines belong to the JavaFX thread, so only copies of their points are passed to the background
+        ArrayList<FrameSnapshot> snapshots = new ArrayList<>();
+        for(Frame frame : sourceFrames){
+            snapshots.add(new FrameSnapshot(frame));
+        }
+        this.renderingKey = key;
+        FrameDecoder.execute(() -> {
+            Image composite = null;
+            try{
+                composite = drawComposite(snapshots);
+            }
+            catch(RuntimeException ex){
+                System.out.println("Onion skin error");
+                System.out.println(ex);
+            }
+            Image result = composite;
+            Platform.runLater(() -> {
+                if(key.equals(this.renderingKey)){ //a newer composite may have been requested meanwhile
+                    this.renderingKey = null;
+                    this.compositeKey = key;
+                    this.layer.setImage(result);
+                }
+            });
+        });
+    }
+    //Returns the frames before the displayed image, the nearest one first
+    private ArrayList<Frame> getSourceFrames(){
+        ArrayList<Frame> sourceFrames = new ArrayList<>();
+        if(this.displayedImage == null){
+            return sourceFrames;
+        }
+        int index = this.displayedImage.getIndex();
+        for(int i = index - 1; i >= Math.max(0, index - this.depth); i--){
+            sourceFrames.add(this.project.getFrame(i));
+        }
+        return sourceFrames;
+    }
+    private void removeLayer(){
+        Parent parent = this.layer.getParent();
+        if(parent instanceof Pane){
+            ((Pane)parent).getChildren().remove(this.layer);
+        }
+    }
+    //Draws the frames onto a transparent image at the EditableImage size, the farthest frame first
+    private static Image drawComposite(ArrayList<FrameSnapshot> snapshots){
+        int width = (int)EditableImage.EDITABLE_IMAGE_WIDTH;
+        int height = (int)EditableImage.EDITABLE_IMAGE_HEIGHT;
+        BufferedImage composite = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D graphics = FrameSnapshot.createGraphics(composite);
+        for(int i = snapshots.size() - 1; i >= 0; i--){
+            FrameSnapshot snapshot = snapshots.get(i);
+            //the EditableImage stretches the pixels to its size, so they are stretched here aswell
+            snapshot.draw(graphics, snapshot.getEditImage(), width, height, 1, NEAREST_OPACITY / Math.pow(2, i));
+        }
+        graphics.dispose();
+        return SwingFXUtils.toFXImage(composite, null);
+    }
+}
@@ -2,16 +2,30 @@ package stopmotioneditor;
 
 /**
  *This class will play the animation
+ * Frames are rendered ahead by a PlaybackBuffer, each pulse only changes the image of a single ImageView.
+ * A PlaybackClock decides which frame is due, frames that are passed are dropped so the animation doesn't run late.
+ * An AudioScheduler plays the audio of the frames with the same clock.
+ * Press T to show the timings of the playback, they are written to a report in the Reports folder when playing ends.
+ * A range of frames can be played once, looped or back and forth, and playing can jump to any frame:
+ * LEFT / RIGHT seek a frame, HOME / END seek to the ends of the range, I / O set the range to start / end at the displayed frame,
+ * C plays the whole project again, L changes the mode, SPACE plays the range from its start.
+ * UP / DOWN double or halve the speed between 0.25x and 4x without restarting, R reverses the direction from the displayed frame
  * @author yigit
  */
 import java.util.ArrayList;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.animation.AnimationTimer;
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
-import javafx.event.ActionEvent;
-import javafx.event.EventHandler;
+import javafx.geometry.Insets;
 import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.CornerRadii;
 import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
@@ -19,74 +33,260 @@ import javafx.util.Duration;
 public class PlayScreen extends Application{
     public double PLAY_SCENE_HEIGHT = 1080;
     public double PLAY_SCENE_WIDTH = 1920;
-    
+    public static final double STATUS_DURATION = 2; //seconds the status label stays after a key is pressed
+
     private Project project;
-    private ArrayList<EditableImage> editableImages;
-    private ArrayList<BigImage> bigImages = new ArrayList<>();
+    private ArrayList<Frame> frames;
     private int numberOfImages;
-    private Pane playPane = new Pane(); //this is the pane holding bigImages one by one
-    private int imageCounter = 0; //Increment this when PlayHandler's handle method is invoked 
-    private Timeline timer; //similar to swing Timer, determines animation fps
-    
+    private int[] holdCounts; //hold counts of the frames when playing started
+    private double fps;
+    private double speed = 1; //multiplier of the fps, kept when seeking
+    private PlaybackRange range; //frames that are played, the whole project once until it is changed with the keys
+    private Pane playPane = new Pane(); //this is the pane holding the playView
+    private ImageView playView = new ImageView(); //displays the rendered frames one by one, no node is added or removed while playing
+    private Label statusLabel = new Label(); //shows the displayed frame and the range after a key is pressed
+    private PauseTransition statusTimer = new PauseTransition(Duration.seconds(STATUS_DURATION));
+    private PlaybackBuffer playbackBuffer; //renders the upcoming frames with their drawings
+    private PlaybackBuffer.RenderedFrame displayedFrame; //frame of the current run that is on the screen, null before the first one
+    private int displayedIndex = 0; //index of the frame on the screen, kept when seeking
+    private PlaybackClock clock; //determines which frame is due with respect to the fps
+    private AudioScheduler audioScheduler; //plays the audio of the frames in time with the clock
+    private PlaybackTelemetry telemetry; //timings of the frames, shown in an overlay and written to a report
+    private AnimationTimer timer; //invoked on every pulse, presents the frame that is due
+    private boolean isPlaying = false;
+
+    /**
+     * Plays the given project as it is, e.g. the project open in the EditScreen with its unsaved changes
+     * Decoded images of the frames are reused, nothing is read from the database. Invoke start with a new Stage
+     */
+    public PlayScreen(Project project){
+        this.project = project;
+    }
+
     @Override
     public void start(Stage primaryStage){
-        //Receive the project first from database etc. !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
-        this.project = Database.getProject("emir", "project");  // ENTER USERNAME AND PROJECTNAME HERE 
-        
         this.initializeProperties();
         this.initializeTimer();
         //this.project.setPlayScreen(this);
-        
-        //PLay the project 
-        this.timer.play();
-        
+
+        //PLay the project
+        this.playFrom(0);
+
         Scene scene = new Scene(playPane, PLAY_SCENE_WIDTH, PLAY_SCENE_HEIGHT);
+        scene.setOnKeyPressed(e -> this.handleKey(e));
         primaryStage.setScene(scene);
+        primaryStage.setTitle("Play Project");
+        primaryStage.setOnHidden(e -> {
+            if(this.isPlaying){
+                this.finishPlaying(System.nanoTime()); //closed before the end, the report is still written
+            }
+        });
         primaryStage.show();
-        
+
     }
-    public static void main(String[] args){
-        launch(args);
+    /**
+     * Copies the frames and their hold counts, held frames are rendered once and stay on the screen longer
+     * The project may still be edited in the EditScreen while playing, so seeking and range changes use this copy
+     */
+    private void initializeFrames(){
+        this.frames = new ArrayList<>(this.project.getAllFrames());
+        this.numberOfImages = this.frames.size();
+        this.holdCounts = new int[this.numberOfImages];
+        for(int i = 0; i < this.numberOfImages; i++){
+            this.holdCounts[i] = this.frames.get(i).getHoldCount();
+        }
     }
-    //Initialize the numberOfImages
+    //Initialize the frames, the range, the playView and the labels
     private void initializeProperties(){
-        editableImages = this.project.getAllImages();
-        this.numberOfImages = editableImages.size();
-        for(int i = 0; i < numberOfImages ; i++){
-            EditableImage currentEditableImg = editableImages.get(i);
-            BigImage currentBigImage = currentEditableImg.getBigImage();
-            this.bigImages.add(currentBigImage);
-        }
-        
+        this.initializeFrames();
+        this.fps = this.project.getFpsRate();
+        this.range = PlaybackRange.wholeProject(this.holdCounts);
+        //frames are drawn at the play size, no Polyline node is created for playing
+        this.playView.setFitWidth(FinalImage.BIG_IMAGE_WIDTH);
+        this.playView.setFitHeight(FinalImage.BIG_IMAGE_HEIGHT);
+        this.playView.setPreserveRatio(true);
+        this.statusLabel.setTextFill(Color.WHITE);
+        this.statusLabel.setBackground(new Background(new BackgroundFill(Color.rgb(0, 0, 0, 0.6), new CornerRadii(4), Insets.EMPTY)));
+        this.statusLabel.setPadding(new Insets(8));
+        this.statusLabel.setLayoutX(10);
+        this.statusLabel.setLayoutY(FinalImage.BIG_IMAGE_HEIGHT - 50);
+        this.statusLabel.setVisible(false);
+        this.statusTimer.setOnFinished(e -> this.statusLabel.setVisible(false));
+        this.telemetry = new PlaybackTelemetry(null, this.fps); //the clock is given when playing starts
+        this.playPane.getChildren().addAll(this.playView, this.telemetry.getOverlay(), this.statusLabel); //labels above the playView
     }
-    
+
     private void initializeTimer(){
-        double fps = this.project.getFpsRate();
-        PlayHandler playHandler = new PlayHandler();
-        this.timer = new Timeline(new KeyFrame(Duration.millis(1000 / fps), playHandler));
-        this.timer.setCycleCount(numberOfImages);
+        this.timer = new AnimationTimer(){
+            @Override
+            public void handle(long now){
+                presentDueFrame(now);
+            }
+        };
     }
-    //Invoke from setFps of project
-    public EventHandler<ActionEvent> getPlayHandler(){
-        return new PlayHandler();
+    /**
+     * Plays the range from the given step, the frame on the screen stays until the first frame of the step is rendered
+     * The previous buffer and audio are stopped, the new buffer only renders ahead of the step so seeking anywhere costs the same
+     */
+    private void playFrom(int step){
+        if(this.playbackBuffer != null){
+            this.playbackBuffer.stop();
+            this.audioScheduler.stop();
+        }
+        this.displayedFrame = null; //its ring image belongs to the previous buffer
+        this.clock = new PlaybackClock(this.fps, this.range, step);
+        this.clock.setSpeed(this.speed, System.nanoTime()); //the clock isn't started, only the speed is set
+        this.playbackBuffer = new PlaybackBuffer(this.frames, this.fps, this.range, step);
+        this.playbackBuffer.setSpeed(this.speed);
+        this.audioScheduler = new AudioScheduler(this.frames, this.clock);
+        this.telemetry.setClock(this.clock);
+        this.playbackBuffer.start();
+        if(!this.isPlaying){
+            this.isPlaying = true;
+            this.timer.start();
+        }
     }
-    
-    class PlayHandler implements EventHandler<ActionEvent>{
-
-        @Override
-        public void handle(ActionEvent event) {
-            playPane.getChildren().clear();
-            BigImage bigImage = bigImages.get(imageCounter);
-            EditableImage editableImage = editableImages.get(imageCounter++);
-            
-            
-            Pane bigImageContainer = bigImage.getBigImageContainer(); //bigImage and its polylines
-            playPane.getChildren().add(bigImageContainer);
-            //playPane.getChildren().add(bigImage);
-            //Play the audio
-            editableImage.playAudio();
+    //Plays from the given frame, frames outside the range are taken as the nearest end of it
+    private void seek(int frameIndex){
+        this.playFrom(this.range.getStepOfFrame(frameIndex));
+    }
+    //Plays the given range from the displayed frame if it is in the range, from the nearest end of the range otherwise
+    private void setRange(int inIndex, int outIndex, PlaybackRange.Mode mode, boolean isReversed){
+        this.range = new PlaybackRange(inIndex, outIndex, mode, isReversed, this.holdCounts);
+        this.seek(this.displayedIndex);
+    }
+    /**
+     * Changes the speed while playing, nothing is restarted: the clock continues from its position at the new speed
+     * and the frames that are already rendered are still displayed
+     */
+    private void setSpeed(double speed){
+        this.speed = Math.max(PlaybackClock.MIN_SPEED, Math.min(PlaybackClock.MAX_SPEED, speed));
+        this.clock.setSpeed(this.speed, System.nanoTime());
+        this.playbackBuffer.setSpeed(this.speed);
+        if(!this.isPlaying){
+            this.seek(this.displayedIndex); //finished playing, the new speed plays from the displayed frame
+        }
+    }
+    private void handleKey(KeyEvent e){
+        PlaybackRange.Mode mode = this.range.getMode();
+        boolean isReversed = this.range.isReversed();
+        switch(e.getCode()){
+            case T:
+                this.telemetry.toggleOverlay();
+                return;
+            case RIGHT:
+                this.seek(this.displayedIndex + 1);
+                break;
+            case LEFT:
+                this.seek(this.displayedIndex - 1);
+                break;
+            case HOME:
+                this.seek(this.range.getInIndex());
+                break;
+            case END:
+                this.seek(this.range.getOutIndex());
+                break;
+            case SPACE:
+                this.playFrom(0);
+                break;
+            case I:
+                this.setRange(this.displayedIndex, Math.max(this.displayedIndex, this.range.getOutIndex()), mode, isReversed);
+                break;
+            case O:
+                this.setRange(Math.min(this.displayedIndex, this.range.getInIndex()), this.displayedIndex, mode, isReversed);
+                break;
+            case C:
+                this.setRange(0, this.numberOfImages - 1, PlaybackRange.Mode.ONCE, isReversed);
+                break;
+            case L:
+                PlaybackRange.Mode nextMode = PlaybackRange.Mode.values()[(mode.ordinal() + 1) % PlaybackRange.Mode.values().length];
+                this.setRange(this.range.getInIndex(), this.range.getOutIndex(), nextMode, isReversed);
+                break;
+            case R:
+                this.setRange(this.range.getInIndex(), this.range.getOutIndex(), mode, !isReversed);
+                break;
+            case UP:
+                this.setSpeed(this.speed * 2);
+                break;
+            case DOWN:
+                this.setSpeed(this.speed / 2);
+                break;
+            default:
+                return;
+        }
+        this.showStatus();
+    }
+    //Shows the displayed frame and the range for a while
+    private void showStatus(){
+        this.statusLabel.setText("frame " + (this.displayedIndex + 1) + " / " + this.numberOfImages + "   " + this.range
+                + String.format("   x%.2f", this.speed));
+        this.statusLabel.setVisible(true);
+        this.statusTimer.playFromStart();
+    }
+    /**
+     * Puts the frame that is due at the given time on the screen, frames before it that weren't displayed are dropped
+     * The clock starts when the buffer is warm, and playing stops once the last frame of a range that isn't repeated
+     * has been displayed for its hold duration
+     */
+    private void presentDueFrame(long now){
+        if(this.range.isEmpty()){
+            this.finishPlaying(now); //nothing to play
+            return;
         }
-        
+        this.telemetry.updateOverlay(now);
+        if(!this.clock.isStarted()){
+            //the first frames are rendered before the clock starts, so they aren't dropped while the worker catches up
+            PlaybackBuffer.RenderedFrame firstFrame = this.playbackBuffer.isWarm() ? this.playbackBuffer.next() : null;
+            if(firstFrame != null){
+                this.clock.start(now);
+                this.present(firstFrame, now);
+            }
+            this.audioScheduler.update(now); //loads the first clips while waiting, plays the first one once started
+            return;
+        }
+        this.audioScheduler.update(now); //audio follows the clock, a dropped frame's sound is still played
+        if(this.clock.isFinished(now)){
+            this.finishPlaying(now);
+            return;
+        }
+        int dueStep = this.clock.getDueStep(now);
+        this.playbackBuffer.setDueStep(dueStep); //the worker skips what is already passed instead of queueing it
+        this.telemetry.framesSkipped(this.playbackBuffer.takeSkippedFrames());
+        PlaybackBuffer.RenderedFrame dueFrame = null;
+        //take the rendered frames up to the due one, every one before it is dropped
+        while(dueFrame == null || dueFrame.getStep() < dueStep){
+            if(dueFrame == null && this.displayedFrame != null && this.displayedFrame.getStep() >= dueStep){
+                return; //the displayed frame is still due
+            }
+            PlaybackBuffer.RenderedFrame renderedFrame = this.playbackBuffer.next();
+            if(renderedFrame == null){
+                break; //the worker is behind, the latest rendered frame is presented late
+            }
+            if(dueFrame != null){
+                this.clock.frameDropped();
+                this.telemetry.frameDropped(dueFrame, now);
+                this.playbackBuffer.release(dueFrame);
+            }
+            dueFrame = renderedFrame;
+        }
+        if(dueFrame != null){
+            this.present(dueFrame, now);
+        }
+    }
+    private void present(PlaybackBuffer.RenderedFrame renderedFrame, long now){
+        this.playView.setImage(renderedFrame.getImage());
+        this.playbackBuffer.release(this.displayedFrame); //not on the screen anymore
+        this.displayedFrame = renderedFrame;
+        this.displayedIndex = renderedFrame.getIndex();
+        long lateness = this.clock.framePresented(renderedFrame.getStep(), now);
+        this.telemetry.framePresented(renderedFrame, lateness, now);
+    }
+    //Stops playing, the last frame stays on the screen, clips that are still playing are cut. A key plays again
+    private void finishPlaying(long now){
+        this.isPlaying = false;
+        this.timer.stop();
+        this.playbackBuffer.stop();
+        this.audioScheduler.stop();
+        this.telemetry.writeReport(now);
     }
-   
-}
\ No newline at end of file
+}
@@ -0,0 +1,338 @@
+package stopmotioneditor;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import javafx.embed.swing.SwingFXUtils;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
+
+/**
+ * This class renders the frames that are about to be played into a ring of images on a worker thread.
+ * Each frame is drawn together with its drawings into one image at the play size, so the PlayScreen only swaps
+ * the image of a single ImageView on each tick. Frames without drawings or filters are played from the decoded image directly.
+ * The worker stays at most RING_SIZE frames ahead of the frame that is being displayed.
+ * Pixels are streamed: only a window of frames ahead of the worker is decoded, and a frame's pixels are released once it is
+ * rendered, so memory stays the same however long the project is. The window grows or shrinks with the measured decode time.
+ * Frames are rendered in the order of a PlaybackRange from any step. A looped or ping-pong range of at most MAX_CACHED_RANGE_FRAMES
+ * frames is decoded as a whole when the buffer starts and kept, so wrapping around doesn't decode anything.
+ * The window follows the steps, so a range played in reverse is prefetched backwards. When the PlayScreen is ahead of the worker,
+ * e.g. at a high speed, the steps that are already passed are skipped instead of being decoded and rendered late
+ */
+public class PlaybackBuffer {
+    public static final int RING_SIZE = 6; //number of frames that are rendered ahead
+    //images frames with drawings are drawn into: the ring, the displayed frame and the one being drawn. Created only when needed
+    public static final int MAX_RING_IMAGES = RING_SIZE + 2;
+    public static final int MIN_READ_AHEAD = 2; //frames that are always being decoded ahead of the worker
+    public static final int MAX_READ_AHEAD = 16; //upper bound of the window, 16 play level images are about 130 MB
+    public static final double DECODE_TIME_WEIGHT = 0.2; //weight of the last decode in the average decode time
+    public static final int MAX_CACHED_RANGE_FRAMES = 24; //repeating ranges up to this many frames keep their pixels
+
+    private ArrayList<Frame> frames;
+    private PlaybackRange range;
+    private int startStep;
+    private FrameSnapshot[] snapshots; //drawings of the frames in the range, null for the other frames
+    private HashMap<Integer, Future<Image>> rangePixels = new HashMap<>(); //frame index -> its pixels for a cached range, only used by the worker
+    private boolean isCachingRange;
+    private ArrayBlockingQueue<RenderedFrame> renderedFrames = new ArrayBlockingQueue<>(RING_SIZE); //rendered, not displayed yet
+    private LinkedBlockingQueue<WritableImage> freeImages = new LinkedBlockingQueue<>(); //ring images that aren't displayed or waiting
+    private int createdImages = 0; //number of ring images, only used by the worker
+    private double fps;
+    private volatile double speed = 1; //multiplier of the fps
+    private volatile int dueStep; //step the PlayScreen is displaying, the worker skips the steps before it
+    private AtomicInteger skippedFrames = new AtomicInteger(); //steps the worker skipped since the last takeSkippedFrames
+    private HashMap<Integer, Future<Image>> window = new HashMap<>(); //step -> its pixels being decoded, only used by the worker
+    private volatile int readAhead = MIN_READ_AHEAD; //number of frames in the window
+    private double averageDecodeTime = 0; //milliseconds, guarded by this
+    private double[] decodeTimes; //milliseconds each frame took to decode, written by the decoder before its future completes
+    private Thread worker;
+    private volatile boolean isStopped = false;
+    private volatile boolean isDone = false; //true when the worker has rendered the last step or stopped
+
+    /**
+     * Takes a snapshot of the drawings of the frames in the range, invoke from the JavaFX thread
+     * @param frames all frames of the project
+     * @param fps frames per second they are played at, used to size the window
+     * @param range frames that are played and their order
+     * @param startStep step of the range that is rendered first
+     */
+    public PlaybackBuffer(ArrayList<Frame> frames, double fps, PlaybackRange range, int startStep){
+        this.frames = new ArrayList<>(frames);
+        this.fps = fps;
+        this.range = range;
+        this.startStep = startStep;
+        this.dueStep = startStep;
+        this.decodeTimes = new double[this.frames.size()];
+        this.snapshots = new FrameSnapshot[this.frames.size()];
+        for(int i = range.getInIndex(); i <= range.getOutIndex() && !range.isEmpty(); i++){
+            this.snapshots[i] = new FrameSnapshot(this.frames.get(i)); //only the points are copied, nothing is decoded here
+        }
+        this.isCachingRange = range.isRepeating() && range.getNumberOfFrames() <= MAX_CACHED_RANGE_FRAMES;
+        this.worker = new Thread(this::render, "PlaybackBuffer");
+        this.worker.setDaemon(true);
+    }
+    //Starts rendering from the first frame
+    public void start(){
+        this.worker.start();
+    }
+    //Stops the worker, invoke when the PlayScreen is closed
+    public void stop(){
+        this.isStopped = true;
+        this.worker.interrupt();
+    }
+    /**
+     * Returns the next frame in order if it is rendered
+     * Invoke from the JavaFX thread, give the frame back with release when it isn't displayed anymore
+     * @return null if the worker hasn't rendered the next frame yet
+     */
+    public RenderedFrame next(){
+        return this.renderedFrames.poll();
+    }
+    //The image of the given frame can be drawn into again, invoke when the frame is replaced on the screen or dropped
+    public void release(RenderedFrame renderedFrame){
+        if(renderedFrame != null && renderedFrame.ringImage != null){
+            this.freeImages.offer(renderedFrame.ringImage);
+        }
+    }
+    //Sets the speed the frames are played at, the window is resized with the next decode
+    public void setSpeed(double speed){
+        this.speed = speed;
+    }
+    //Invoke on every pulse with the step that is due, steps the worker hasn't reached before it are skipped
+    public void setDueStep(int dueStep){
+        this.dueStep = dueStep;
+    }
+    //Returns the number of steps skipped since the last invocation
+    public int takeSkippedFrames(){
+        return this.skippedFrames.getAndSet(0);
+    }
+    public PlaybackRange getRange(){
+        return this.range;
+    }
+    /**
+     * true once the ring is full or every step is rendered, the PlayScreen starts the clock then
+     * so the first frames aren't dropped while the worker catches up
+     */
+    public boolean isWarm(){
+        return this.renderedFrames.remainingCapacity() == 0 || this.isDone;
+    }
+    //Returns the number of frames that are decoded ahead
+    public int getReadAhead(){
+        return this.readAhead;
+    }
+    //Returns the average time it takes to decode a frame, in milliseconds
+    public synchronized double getAverageDecodeTime(){
+        return this.averageDecodeTime;
+    }
+
+    //Worker loop, renders the frames in order and waits while the ring is full
+    private void render(){
+        BufferedImage bitmap = null; //reused for every frame with drawings
+        try{
+            if(this.isCachingRange){
+                //the whole range is decoded in parallel before the first wrap around
+                for(int i = this.range.getInIndex(); i <= this.range.getOutIndex(); i++){
+                    int frameIndex = i;
+                    this.rangePixels.put(i, FrameDecoder.submit(() -> this.decode(frameIndex)));
+                }
+            }
+            else{
+                //the frames that fill the ring are decoded in parallel before the average decode time is known
+                this.fillWindow(this.startStep, RING_SIZE);
+            }
+            for(int step = this.startStep; step < this.range.getLength() && !this.isStopped; step++){
+                int due = this.dueStep;
+                if(step < due){
+                    //the frames are already passed, rendering them would only make the next ones late aswell
+                    this.skippedFrames.addAndGet(due - step);
+                    this.cancelWindowBefore(due);
+                    step = due;
+                }
+                int i = this.range.getFrameIndex(step);
+                Frame frame = this.frames.get(i);
+                FrameSnapshot snapshot = this.snapshots[i];
+                Image pixels = this.takePixels(step);
+                double decodeTime = this.decodeTimes[i]; //visible after the future completes
+                if(this.isCachingRange){
+                    this.decodeTimes[i] = 0; //the next time the frame is played its pixels aren't decoded again
+                }
+                RenderedFrame renderedFrame;
+                if(!snapshot.hasLines()){
+                    renderedFrame = new RenderedFrame(frame, i, step, pixels, null, decodeTime, 0); //the decoded image is displayed as it is
+                }
+                else{
+                    WritableImage ringImage = this.takeFreeImage();
+                    if(bitmap == null){
+                        bitmap = new BufferedImage((int)FinalImage.BIG_IMAGE_WIDTH, (int)FinalImage.BIG_IMAGE_HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE);
+                    }
+                    long renderStartTime = System.nanoTime();
+                    this.drawFrame(bitmap, snapshot, pixels);
+                    SwingFXUtils.toFXImage(bitmap, ringImage); //the ring image isn't displayed, so it can be written here
+                    double renderTime = (System.nanoTime() - renderStartTime) / 1000000.0;
+                    renderedFrame = new RenderedFrame(frame, i, step, ringImage, ringImage, decodeTime, renderTime);
+                }
+                this.renderedFrames.put(renderedFrame);
+            }
+        }
+        catch(InterruptedException ex){
+            //stopped
+        }
+        catch(RuntimeException ex){
+            System.out.println("Playback render error");
+            System.out.println(ex);
+        }
+        finally{
+            for(Future<Image> decoding : this.window.values()){
+                decoding.cancel(false);
+            }
+            for(Future<Image> decoding : this.rangePixels.values()){
+                decoding.cancel(false);
+            }
+            this.window.clear();
+            this.rangePixels.clear();
+            this.isDone = true;
+        }
+    }
+    //Returns an image of the ring that can be drawn into, waits until the PlayScreen displays the next frame if all of them are used
+    private WritableImage takeFreeImage() throws InterruptedException {
+        WritableImage image = this.freeImages.poll();
+        if(image == null && this.createdImages < MAX_RING_IMAGES){
+            this.createdImages++;
+            return new WritableImage((int)FinalImage.BIG_IMAGE_WIDTH, (int)FinalImage.BIG_IMAGE_HEIGHT);
+        }
+        return (image != null) ? image : this.freeImages.take();
+    }
+    /**
+     * Returns the pixels of the frame displayed at the given step, waits if they are still being decoded
+     * The window is filled up to readAhead steps from the step first, and the returned pixels leave the window.
+     * A cached range is decoded as a whole instead, its pixels are kept
+     */
+    private Image takePixels(int step) throws InterruptedException {
+        Future<Image> decoding;
+        if(this.isCachingRange){
+            decoding = this.rangePixels.get(this.range.getFrameIndex(step));
+        }
+        else{
+            this.fillWindow(step, Math.max(1, this.readAhead));
+            decoding = this.window.remove(step);
+        }
+        try{
+            return decoding.get();
+        }
+        catch(ExecutionException ex){
+            System.out.println("Frame decode error");
+            System.out.println(ex.getCause());
+            return FrameImageCache.getPlaceholder();
+        }
+    }
+    //Starts decoding the given number of steps from the given step, steps that are already in the window are passed
+    private void fillWindow(int step, int count){
+        long end = Math.min((long)this.range.getLength(), (long)step + count);
+        for(int i = step; i < end; i++){
+            if(!this.window.containsKey(i)){
+                int frameIndex = this.range.getFrameIndex(i);
+                this.window.put(i, FrameDecoder.submit(() -> this.decode(frameIndex)));
+            }
+        }
+    }
+    //Cancels the decodes of the steps before the given step
+    private void cancelWindowBefore(int step){
+        Iterator<Map.Entry<Integer, Future<Image>>> iterator = this.window.entrySet().iterator();
+        while(iterator.hasNext()){
+            Map.Entry<Integer, Future<Image>> entry = iterator.next();
+            if(entry.getKey() < step){
+                entry.getValue().cancel(false);
+                iterator.remove();
+            }
+        }
+    }
+    //Decodes the pixels of the frame on a decoder thread and measures how long it takes, only its snapshot is read there
+    private Image decode(int index){
+        long startTime = System.nanoTime();
+        Image pixels = this.snapshots[index].decodePlayImage(); //not kept in the FrameImageCache, released after it is rendered
+        double decodeTime = (System.nanoTime() - startTime) / 1000000.0;
+        this.decodeTimes[index] = decodeTime;
+        this.recordDecodeTime(decodeTime);
+        return pixels;
+    }
+    /*
+        Frames are played every 1000 / (fps * speed) ms, so a decode that takes t ms must be started t * fps * speed / 1000 frames ahead.
+        The window covers that with the average decode time, plus MIN_READ_AHEAD for decodes that take longer than average
+    */
+    private synchronized void recordDecodeTime(double decodeTime){
+        if(this.averageDecodeTime == 0){
+            this.averageDecodeTime = decodeTime;
+        }
+        else{
+            this.averageDecodeTime += (decodeTime - this.averageDecodeTime) * DECODE_TIME_WEIGHT;
+        }
+        int framesPerDecode = (int)Math.ceil(this.averageDecodeTime * this.fps * this.speed / 1000);
+        this.readAhead = Math.max(MIN_READ_AHEAD, Math.min(MAX_READ_AHEAD, framesPerDecode + MIN_READ_AHEAD));
+    }
+    //Draws the pixels and drawings of the frame into the bitmap, the pixels keep their ratio like in the EditableImage
+    private void drawFrame(BufferedImage bitmap, FrameSnapshot snapshot, Image pixels){
+        Graphics2D graphics = FrameSnapshot.createGraphics(bitmap);
+        graphics.setBackground(new java.awt.Color(0, 0, 0, 0));
+        graphics.clearRect(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        double imageWidth = bitmap.getWidth();
+        double imageHeight = bitmap.getHeight();
+        if(pixels.getWidth() > 0 && pixels.getHeight() > 0){
+            double scale = Math.min(imageWidth / pixels.getWidth(), imageHeight / pixels.getHeight());
+            imageWidth = pixels.getWidth() * scale;
+            imageHeight = pixels.getHeight() * scale;
+        }
+        snapshot.draw(graphics, pixels, imageWidth, imageHeight, EditableImage.BIG_IMAGE_EDITABLE_IMAGE_RATIO, 1);
+        graphics.dispose();
+    }
+
+    /**
+     * This class represents a frame that is ready to be displayed
+     */
+    public static class RenderedFrame {
+        private Frame frame;
+        private int index; //index of the frame in the project
+        private int step; //step of the range the frame is displayed at
+        private Image image;
+        private WritableImage ringImage; //image of the ring the frame is drawn into, null if the decoded image is displayed
+        private double decodeTime; //milliseconds
+        private double renderTime; //milliseconds spent drawing the drawings, 0 if the frame has none
+
+        RenderedFrame(Frame frame, int index, int step, Image image, WritableImage ringImage, double decodeTime, double renderTime){
+            this.frame = frame;
+            this.index = index;
+            this.step = step;
+            this.image = image;
+            this.ringImage = ringImage;
+            this.decodeTime = decodeTime;
+            this.renderTime = renderTime;
+        }
+        public Frame getFrame(){
+            return this.frame;
+        }
+        public int getIndex(){
+            return this.index;
+        }
+        public int getStep(){
+            return this.step;
+        }
+        public Image getImage(){
+            return this.image;
+        }
+        //Returns the time it took to decode the pixels of the frame, in milliseconds
+        public double getDecodeTime(){
+            return this.decodeTime;
+        }
+        //Returns the time it took to draw the frame with its drawings, in milliseconds
+        public double getRenderTime(){
+            return this.renderTime;
+        }
+    }
+}
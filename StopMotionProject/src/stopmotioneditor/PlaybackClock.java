@@ -0,0 +1,135 @@
+package stopmotioneditor;
+
+/**
+ * This class decides which frame should be on the screen during playback, using System.nanoTime instead of counting ticks.
+ * Playback is counted in the steps of a PlaybackRange, step i is due at start + (sum of the hold counts before it) / fps,
+ * so a late frame doesn't push the frames after it: frames that are passed are dropped.
+ * The clock can start at any step, the first step is due when the clock starts.
+ * The speed can be changed while playing: the clock continues from the position it has reached at the new speed,
+ * so the frames that are already rendered stay valid.
+ * It also counts the presented and dropped frames and how late the presented ones were (jitter)
+ */
+public class PlaybackClock {
+    public static final long NANOS_PER_SECOND = 1000000000L;
+    public static final double MIN_SPEED = 0.25;
+    public static final double MAX_SPEED = 4;
+
+    private double fps;
+    private double speed = 1; //multiplier of the fps
+    private PlaybackRange range;
+    private int startStep; //step that is due when the clock starts
+    private double anchorTicks; //frame durations before the start step, or played until the last change of speed
+    private long anchorTime = -1; //time the clock started or the speed last changed, -1 until the clock starts
+    private long startTime = -1; //time the first frame is presented, -1 until then
+    private long presentedFrames = 0;
+    private long droppedFrames = 0;
+    private long totalLateness = 0; //sum of presentation time - due time, in nanoseconds
+    private long maxLateness = 0;
+
+    /**
+     * @param fps frame durations per second
+     * @param range frames that are played and their order
+     * @param startStep step that is displayed first, e.g. the step of the frame that is seeked to
+     */
+    public PlaybackClock(double fps, PlaybackRange range, int startStep){
+        this.fps = fps;
+        this.range = range;
+        this.startStep = startStep;
+        this.anchorTicks = range.getTicks(startStep);
+    }
+    //Starts the clock, the start step is due at the given time
+    public void start(long now){
+        this.startTime = now;
+        this.anchorTime = now;
+    }
+    /**
+     * Plays the following frames at the given multiple of the fps, clamped to MIN_SPEED..MAX_SPEED
+     * The frame durations played so far are kept, so the due step doesn't jump
+     */
+    public void setSpeed(double speed, long now){
+        if(this.isStarted()){
+            this.anchorTicks = this.getTicks(now);
+            this.anchorTime = now;
+        }
+        this.speed = Math.max(MIN_SPEED, Math.min(MAX_SPEED, speed));
+    }
+    public double getSpeed(){
+        return this.speed;
+    }
+    //Returns the frames per second the steps are displayed at, the fps times the speed
+    public double getEffectiveFps(){
+        return this.fps * this.speed;
+    }
+    public boolean isStarted(){
+        return this.startTime >= 0;
+    }
+    //Returns the step that should be on the screen at the given time, the last step after the end
+    public int getDueStep(long now){
+        return this.range.getStep((long)Math.floor(this.getTicks(now)));
+    }
+    //Returns the time the given step is due, the step after the last one gives the end of the animation
+    public long getDueTime(int step){
+        return this.anchorTime + this.getStepTime(step);
+    }
+    /**
+     * Returns the time the given step is due after the clock started or the speed last changed, in nanoseconds
+     * Can be invoked before the clock starts, compare it with getPosition
+     */
+    public long getStepTime(int step){
+        return Math.round((this.range.getTicks(step) - this.anchorTicks) * NANOS_PER_SECOND / this.getEffectiveFps());
+    }
+    //Returns the time since the clock started or the speed last changed, in nanoseconds, 0 before the clock starts
+    public long getPosition(long now){
+        return this.isStarted() ? now - this.anchorTime : 0;
+    }
+    //Returns the frame durations played at the given time, with the fraction of the current one
+    private double getTicks(long now){
+        return this.anchorTicks + (now - this.anchorTime) * this.getEffectiveFps() / NANOS_PER_SECOND;
+    }
+    //true if every step has been on the screen for its whole duration, never true for a repeating range
+    public boolean isFinished(long now){
+        return this.isStarted() && !this.range.isRepeating() && now >= this.getDueTime(this.range.getLength());
+    }
+    public PlaybackRange getRange(){
+        return this.range;
+    }
+    public int getStartStep(){
+        return this.startStep;
+    }
+    /**
+     * Invoke when the given step is put on the screen
+     * @return time the frame was put on the screen after it was due, in nanoseconds
+     */
+    public long framePresented(int step, long now){
+        long lateness = Math.max(0, now - this.getDueTime(step));
+        this.presentedFrames++;
+        this.totalLateness += lateness;
+        this.maxLateness = Math.max(this.maxLateness, lateness);
+        return lateness;
+    }
+    //Invoke when a frame is skipped since a later frame is already due
+    public void frameDropped(){
+        this.droppedFrames++;
+    }
+    public long getPresentedFrames(){
+        return this.presentedFrames;
+    }
+    public long getDroppedFrames(){
+        return this.droppedFrames;
+    }
+    //Average time the presented frames were put on the screen after they were due, in milliseconds
+    public double getAverageJitter(){
+        return (this.presentedFrames == 0) ? 0 : this.totalLateness / (double)this.presentedFrames / 1000000;
+    }
+    //Maximum time a presented frame was put on the screen after it was due, in milliseconds
+    public double getMaxJitter(){
+        return this.maxLateness / 1000000.0;
+    }
+    //Time since the first frame, in milliseconds
+    public double getElapsedTime(long now){
+        return this.isStarted() ? (now - this.startTime) / 1000000.0 : 0;
+    }
+    public double getFps(){
+        return this.fps;
+    }
+}
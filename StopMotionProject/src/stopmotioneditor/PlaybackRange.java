@@ -0,0 +1,130 @@
+package stopmotioneditor;
+
+/**
+ * This class describes which frames are played and in which order: the frames from the in frame to the out frame,
+ * played once, looped or back and forth (ping-pong), forwards or in reverse.
+ * Playback is counted in steps, step i displays the frame getFrameIndex(i) for its hold count. Looped and ping-pong ranges
+ * repeat a period of steps forever, so the frame and the start time of any step are found in constant time from one period,
+ * which is what seeking uses
+ */
+public class PlaybackRange {
+    public enum Mode { ONCE, LOOP, PING_PONG }
+
+    private int inIndex;
+    private int outIndex;
+    private Mode mode;
+    private boolean isReversed; //played from the out frame towards the in frame
+    private int periodLength; //number of steps before the order repeats, the whole range for ONCE
+    private long[] periodTicks; //frame durations before each step of the period, one more entry for the whole period
+
+    /**
+     * @param inIndex index of the first frame of the range
+     * @param outIndex index of the last frame of the range, inclusive
+     * @param mode how the range is played
+     * @param holdCounts hold counts of all frames of the project, in order
+     */
+    public PlaybackRange(int inIndex, int outIndex, Mode mode, int[] holdCounts){
+        this(inIndex, outIndex, mode, false, holdCounts);
+    }
+    /**
+     * @param isReversed true to play from the out frame towards the in frame
+     */
+    public PlaybackRange(int inIndex, int outIndex, Mode mode, boolean isReversed, int[] holdCounts){
+        this.isReversed = isReversed;
+        this.inIndex = Math.max(0, Math.min(inIndex, outIndex));
+        this.outIndex = Math.min(holdCounts.length - 1, Math.max(inIndex, outIndex));
+        this.mode = mode;
+        int frameCount = Math.max(0, this.outIndex - this.inIndex + 1);
+        //the first and last frames aren't repeated when the direction changes
+        this.periodLength = (mode == Mode.PING_PONG && frameCount > 1) ? 2 * frameCount - 2 : frameCount;
+        this.periodTicks = new long[this.periodLength + 1];
+        for(int i = 0; i < this.periodLength; i++){
+            this.periodTicks[i + 1] = this.periodTicks[i] + Math.max(1, holdCounts[this.getFrameIndex(i)]);
+        }
+    }
+    //Returns a range of every frame of the given hold counts that is played once
+    public static PlaybackRange wholeProject(int[] holdCounts){
+        return new PlaybackRange(0, holdCounts.length - 1, Mode.ONCE, holdCounts);
+    }
+    public int getInIndex(){
+        return this.inIndex;
+    }
+    public int getOutIndex(){
+        return this.outIndex;
+    }
+    public Mode getMode(){
+        return this.mode;
+    }
+    public boolean isReversed(){
+        return this.isReversed;
+    }
+    public boolean isEmpty(){
+        return this.periodLength == 0;
+    }
+    public boolean isRepeating(){
+        return this.mode != Mode.ONCE && !this.isEmpty();
+    }
+    //Returns the number of steps that are played, Integer.MAX_VALUE if the range repeats
+    public int getLength(){
+        return this.isRepeating() ? Integer.MAX_VALUE : this.periodLength;
+    }
+    //Returns the number of different frames in the range
+    public int getNumberOfFrames(){
+        return this.isEmpty() ? 0 : this.outIndex - this.inIndex + 1;
+    }
+    //Returns the index of the frame displayed at the given step
+    public int getFrameIndex(int step){
+        int position = (this.periodLength == 0) ? 0 : step % this.periodLength;
+        int frameCount = this.outIndex - this.inIndex + 1;
+        if(position >= frameCount){
+            position = this.periodLength - position; //coming back in ping-pong
+        }
+        return this.isReversed ? this.outIndex - position : this.inIndex + position;
+    }
+    //Returns the first step that displays the given frame, frames outside the range are taken as the nearest end of it
+    public int getStepOfFrame(int frameIndex){
+        int clampedIndex = Math.max(this.inIndex, Math.min(this.outIndex, frameIndex));
+        return this.isReversed ? this.outIndex - clampedIndex : clampedIndex - this.inIndex;
+    }
+    //Returns the frame durations before the given step
+    public long getTicks(int step){
+        if(this.periodLength == 0){
+            return 0;
+        }
+        if(!this.isRepeating()){
+            return this.periodTicks[Math.min(step, this.periodLength)];
+        }
+        return (step / this.periodLength) * this.periodTicks[this.periodLength] + this.periodTicks[step % this.periodLength];
+    }
+    //Returns the step that is displayed after the given number of frame durations, the last step after the end
+    public int getStep(long ticks){
+        if(this.periodLength == 0){
+            return 0;
+        }
+        long periodDuration = this.periodTicks[this.periodLength];
+        long periods = 0;
+        if(this.isRepeating()){
+            periods = ticks / periodDuration;
+            ticks = ticks % periodDuration;
+        }
+        //last step of the period that starts at or before the ticks
+        int low = 0;
+        int high = this.periodLength - 1;
+        while(low < high){
+            int middle = (low + high + 1) / 2;
+            if(this.periodTicks[middle] <= ticks){
+                low = middle;
+            }
+            else{
+                high = middle - 1;
+            }
+        }
+        return (int)Math.min(Integer.MAX_VALUE - 1, periods * this.periodLength + low);
+    }
+    //Returns a short description for the PlayScreen, e.g. "frames 3-14 loop reverse"
+    @Override
+    public String toString(){
+        String modeName = (this.mode == Mode.ONCE) ? "once" : (this.mode == Mode.LOOP) ? "loop" : "ping-pong";
+        return "frames " + (this.inIndex + 1) + "-" + (this.outIndex + 1) + " " + modeName + (this.isReversed ? " reverse" : "");
+    }
+}
@@ -0,0 +1,221 @@
+package stopmotioneditor;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Locale;
+import javafx.geometry.Insets;
+import javafx.scene.control.Label;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.CornerRadii;
+import javafx.scene.paint.Color;
+
+/**
+ * This class collects the timings of every frame during playback: how long its pixels took to decode and its drawings to render,
+ * how late it was put on the screen, whether it was dropped, and the heap in use at that moment.
+ * They are shown live in an optional overlay on the PlayScreen and written to a CSV report when playing ends,
+ * so playbacks can be compared between machines and builds. Samples are kept when the PlayScreen seeks and gets a new clock.
+ * Looped ranges play forever, so samples are written to the report as they come and only running totals are kept in memory
+ */
+public class PlaybackTelemetry {
+    public static final String REPORT_FOLDER = "Reports";
+    public static final long OVERLAY_UPDATE_INTERVAL = 250000000L; //the overlay text changes 4 times a second at most
+    public static final long FPS_WINDOW = 1000000000L; //achieved fps is measured over the last second
+    public static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private PlaybackClock clock; //clock of the current run, replaced on seek
+    private double targetFps; //fps rate of the project
+    private File report; //null until the first sample
+    private PrintWriter reportWriter; //null until the first sample and after the report is finished
+    private boolean isReportFailed = false; //true if the report couldn't be written, samples aren't written then
+    private ArrayDeque<Long> presentationTimes = new ArrayDeque<>(); //times frames were presented in the last FPS_WINDOW
+    private Label overlay = new Label();
+    private long lastOverlayUpdate = 0;
+    private Sample lastPresented; //last presented frame, shown in the overlay
+    private long peakHeap = 0; //bytes
+    private long firstPresentationTime = -1; //time the first frame is presented, -1 until then
+    private long presentedFrames = 0;
+    private long droppedFrames = 0;
+    private long skippedFrames = 0; //frames the PlaybackBuffer skipped without rendering them
+    private long totalLateness = 0; //nanoseconds
+    private long maxLateness = 0;
+
+    public PlaybackTelemetry(PlaybackClock clock, double targetFps){
+        this.clock = clock;
+        this.targetFps = targetFps;
+        this.overlay.setTextFill(Color.WHITE);
+        this.overlay.setBackground(new Background(new BackgroundFill(Color.rgb(0, 0, 0, 0.6), new CornerRadii(4), Insets.EMPTY)));
+        this.overlay.setPadding(new Insets(8));
+        this.overlay.setLayoutX(10);
+        this.overlay.setLayoutY(10);
+        this.overlay.setMouseTransparent(true);
+        this.overlay.setVisible(false); //hidden until it is toggled
+    }
+    //Invoke when the PlayScreen seeks and plays from a new clock
+    public void setClock(PlaybackClock clock){
+        this.clock = clock;
+    }
+    //Returns the overlay label, add it above the image of the PlayScreen
+    public Label getOverlay(){
+        return this.overlay;
+    }
+    public void toggleOverlay(){
+        this.overlay.setVisible(!this.overlay.isVisible());
+    }
+    /**
+     * Invoke when a frame is put on the screen
+     * @param lateness time the frame was presented after it was due, returned by PlaybackClock.framePresented
+     */
+    public void framePresented(PlaybackBuffer.RenderedFrame renderedFrame, long lateness, long now){
+        Sample sample = this.addSample(renderedFrame, false, lateness, now);
+        this.lastPresented = sample;
+        this.presentationTimes.addLast(now);
+        if(this.firstPresentationTime < 0){
+            this.firstPresentationTime = now;
+        }
+        this.presentedFrames++;
+        this.totalLateness += lateness;
+        this.maxLateness = Math.max(this.maxLateness, lateness);
+    }
+    //Invoke when a rendered frame is skipped since a later frame is already due
+    public void frameDropped(PlaybackBuffer.RenderedFrame renderedFrame, long now){
+        this.addSample(renderedFrame, true, 0, now);
+        this.droppedFrames++;
+    }
+    //Invoke with the number of frames the PlaybackBuffer skipped since it was asked last
+    public void framesSkipped(int count){
+        this.skippedFrames += count;
+    }
+    //Updates the overlay text if it is visible, invoke on every pulse
+    public void updateOverlay(long now){
+        while(!this.presentationTimes.isEmpty() && now - this.presentationTimes.peekFirst() > FPS_WINDOW){
+            this.presentationTimes.removeFirst();
+        }
+        if(!this.overlay.isVisible() || now - this.lastOverlayUpdate < OVERLAY_UPDATE_INTERVAL){
+            return;
+        }
+        this.lastOverlayUpdate = now;
+        StringBuilder text = new StringBuilder();
+        double speed = (this.clock == null) ? 1 : this.clock.getSpeed();
+        text.append(String.format(Locale.US, "fps %.1f / %.1f  (x%.2f)%n", this.getAchievedFps(now), this.targetFps * speed, speed));
+        if(this.lastPresented != null){
+            text.append(String.format(Locale.US, "frame %d%n", this.lastPresented.index + 1));
+            text.append(String.format(Locale.US, "decode %.1f ms  render %.1f ms%n", this.lastPresented.decodeTime, this.lastPresented.renderTime));
+            text.append(String.format(Locale.US, "late %.1f ms  (avg %.1f  max %.1f)%n",
+                    this.lastPresented.lateness, this.getAverageLateness(), this.maxLateness / 1000000.0));
+        }
+        text.append(String.format(Locale.US, "dropped %d  skipped %d of %d%n", this.droppedFrames, this.skippedFrames, this.presentedFrames + this.droppedFrames + this.skippedFrames));
+        text.append(String.format(Locale.US, "heap %.0f MB (peak %.0f MB)", getUsedHeap() / BYTES_PER_MEGABYTE, this.peakHeap / BYTES_PER_MEGABYTE));
+        this.overlay.setText(text.toString());
+    }
+    //Returns the number of frames presented in the last second
+    public double getAchievedFps(long now){
+        if(this.presentationTimes.isEmpty()){
+            return 0;
+        }
+        //until a whole second has passed the frames are divided by the time that has passed
+        double window = Math.min(FPS_WINDOW, Math.max(1, now - this.firstPresentationTime)) / (double)PlaybackClock.NANOS_PER_SECOND;
+        return this.presentationTimes.size() / window;
+    }
+    //Average time the presented frames were put on the screen after they were due, in milliseconds
+    public double getAverageLateness(){
+        return (this.presentedFrames == 0) ? 0 : this.totalLateness / (double)this.presentedFrames / 1000000;
+    }
+    /**
+     * Writes the summary after the samples and closes the CSV file in the REPORT_FOLDER, invoke when playing ends
+     * Frames that are played after this start a new report
+     * @return the report file, null if nothing was played or it couldn't be written
+     */
+    public File writeReport(long now){
+        PrintWriter writer = this.reportWriter;
+        if(writer == null){
+            return null;
+        }
+        this.reportWriter = null;
+        double elapsedSeconds = (this.firstPresentationTime < 0) ? 0 : (now - this.firstPresentationTime) / (double)PlaybackClock.NANOS_PER_SECOND;
+        //summary lines start with # so the samples can still be read as a plain CSV
+        writer.println("# java," + System.getProperty("java.version") + "," + System.getProperty("os.name") + "," + Runtime.getRuntime().availableProcessors() + " cpus");
+        writer.println(String.format(Locale.US, "# target fps,%.2f", this.targetFps));
+        writer.println(String.format(Locale.US, "# achieved fps,%.2f", (elapsedSeconds > 0) ? this.presentedFrames / elapsedSeconds : 0));
+        writer.println("# presented frames," + this.presentedFrames);
+        writer.println("# dropped frames," + this.droppedFrames);
+        writer.println("# skipped frames," + this.skippedFrames);
+        writer.println(String.format(Locale.US, "# lateness ms,avg %.2f,max %.2f", this.getAverageLateness(), this.maxLateness / 1000000.0));
+        writer.println("# range," + this.clock.getRange() + String.format(Locale.US, " x%.2f", this.clock.getSpeed()));
+        writer.println(String.format(Locale.US, "# peak heap mb,%.1f", this.peakHeap / BYTES_PER_MEGABYTE));
+        writer.println("# " + FrameImageCache.getStatistics());
+        writer.close();
+        if(writer.checkError()){
+            System.out.println("Playback report error");
+            return null;
+        }
+        return this.report;
+    }
+
+    private Sample addSample(PlaybackBuffer.RenderedFrame renderedFrame, boolean isDropped, long lateness, long now){
+        Sample sample = new Sample();
+        sample.index = renderedFrame.getIndex();
+        sample.isDropped = isDropped;
+        sample.dueTime = this.clock.getStepTime(renderedFrame.getStep()) / 1000000.0;
+        sample.presentationTime = this.clock.getPosition(now) / 1000000.0;
+        sample.lateness = lateness / 1000000.0;
+        sample.decodeTime = renderedFrame.getDecodeTime();
+        sample.renderTime = renderedFrame.getRenderTime();
+        sample.heap = getUsedHeap();
+        this.peakHeap = Math.max(this.peakHeap, sample.heap);
+        this.writeSample(sample);
+        return sample;
+    }
+    //Appends the sample to the report, the file is created with the first sample
+    private void writeSample(Sample sample){
+        if(this.isReportFailed){
+            return;
+        }
+        if(this.reportWriter == null){
+            File folder = new File(REPORT_FOLDER);
+            folder.mkdirs();
+            String baseName = "playback-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+            try{
+                //createNewFile is atomic, so runs that start in the same millisecond get their own numbered report
+                this.report = new File(folder, baseName + ".csv");
+                for(int i = 2; !this.report.createNewFile(); i++){
+                    this.report = new File(folder, baseName + "-" + i + ".csv");
+                }
+                this.reportWriter = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.report), StandardCharsets.UTF_8)));
+            }
+            catch(IOException ex){
+                System.out.println("Playback report error");
+                System.out.println(ex);
+                this.isReportFailed = true;
+                return;
+            }
+            this.reportWriter.println("frame,dropped,due_ms,presented_ms,late_ms,decode_ms,render_ms,heap_mb");
+        }
+        this.reportWriter.println(String.format(Locale.US, "%d,%b,%.2f,%.2f,%.2f,%.2f,%.2f,%.1f", sample.index + 1, sample.isDropped, sample.dueTime,
+                sample.presentationTime, sample.lateness, sample.decodeTime, sample.renderTime, sample.heap / BYTES_PER_MEGABYTE));
+    }
+    private static long getUsedHeap(){
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    //Timings of a single frame, times are in milliseconds. Only the last presented one is kept after it is written
+    private static class Sample {
+        private int index;
+        private boolean isDropped;
+        private double dueTime; //after the start step of its run
+        private double presentationTime; //after the start step of its run, the time it was dropped for a dropped frame
+        private double lateness;
+        private double decodeTime;
+        private double renderTime;
+        private long heap; //bytes
+    }
+}
@@ -8,6 +8,7 @@ package stopmotioneditor;
 
 
 import java.util.ArrayList;
+import java.util.Collections;
 import javafx.animation.Timeline;
 import javafx.animation.KeyFrame;
 import javafx.event.ActionEvent;
@@ -23,11 +24,12 @@ import javafx.scene.shape.Circle;
  */
 public class Project {
    public static final double INITIAL_FPS_RATE = 9;
+   public static final int RESIDENT_IMAGE_RADIUS = 5; //EditableImage and edit level pixels are kept only for frames this close to the selected frame
    
    private String name;
     // user data field?
-   private ArrayList<EditableImage> images = new ArrayList<>();
-   private ArrayList <EditableImage> clonedArrayList = new ArrayList<>();
+   private ArrayList<Frame> frames = new ArrayList<>(); //nodes of each frame are created on demand, see Frame
+   private ArrayList <Frame> clonedArrayList = new ArrayList<>();
    //private Timeline timer; //similar to swing Timer, determines animation fps
    private int numberOfImages; //THIS IS IMPORTANT FOR SMALLIMAGE, represents the no of images must be updated during runtime when necessary
    private double fpsRate = INITIAL_FPS_RATE;
@@ -39,19 +41,19 @@ public class Project {
    private Circle drawingCircle; //This is the same circle with the one in the DrawingChoicePane, will be used from EditableImage event handling
    private int selectedImgIndex;  //Will be useful for smallImage event handling
    private String userName;
+   private ProjectLoader projectLoader; //streams the images in the background when the project is opened with Database.openProject, null otherwise
    
    /**
     * constructs a Project
     * Will be invoked when the project is constructed for the first time(not taken from database)
-    * @param images 
+    * @param frames 
     * @param projectName 
-    * @param userName
     */
-   public Project(ArrayList<EditableImage> editableImages, String projectName){
+   public Project(ArrayList<Frame> frames, String projectName){
        //set the numberOfImagesInProject in each editableImage during construction, will be used for smallImage indexLabell
        this.name = projectName;
-       this.numberOfImages = (editableImages == null) ? 0 : editableImages.size();
-       this.images = editableImages;
+       this.numberOfImages = (frames == null) ? 0 : frames.size();
+       this.frames = frames;
        //this.initializeTimer();
        
        //After each EditableImage has been created, initialize the smallImage's labels accordingly
@@ -64,7 +66,7 @@ public class Project {
        this.numberOfImages = imageFilePaths.size();
        for(int i = 0; i < numberOfImages; i++){
            String filePath = imageFilePaths.get(i);
-           images.add(new EditableImage(filePath,this,i));
+           frames.add(new Frame(filePath,this,i));
        }
        //this.initializeTimer();
        
@@ -83,8 +85,8 @@ public class Project {
    public void incrementNumberOfImages () {
        this.numberOfImages++;
    }
-   public void addImage (EditableImage ei) {
-       this.images.add(ei);
+   public void addFrame (Frame frame) {
+       this.frames.add(frame);
    }
    public String getProjectName(){
        return name;
@@ -99,27 +101,38 @@ public class Project {
    }
    //IMPORTANT, invoke each time when an image is deleted added pasted etc., updates the number of images
    public void updateNumberOfImages(){
-       this.numberOfImages = this.images.size();
+       this.numberOfImages = this.frames.size();
    }
    /**
     * 
     * @param startIndex, start index of the sublist, inclusive
     * @param endIndex end index of the sublist, exclusive
     * works similar to substring method
-    * @return new arraylist of EditableImage 
+    * @return new arraylist of Frame 
     */
-   public ArrayList<EditableImage> getImages(int startIndex, int endIndex){
+   public ArrayList<Frame> getFrames(int startIndex, int endIndex){
        //toDo
        return null;
    }
    /**
     * 
     * @param index of image
-    * @return image on the specified index if exists
+    * @return image on the specified index if exists, it is created if the frame has no EditableImage
     */
    public EditableImage getImage(int index){
-       if(index >= 0 && index < this.images.size()){
-           return this.images.get(index);
+       if(index >= 0 && index < this.frames.size()){
+           return this.frames.get(index).getEditableImage();
+       }
+       return null;   
+   }
+   /**
+    * 
+    * @param index of frame
+    * @return frame on the specified index if exists, doesn't create any node
+    */
+   public Frame getFrame(int index){
+       if(index >= 0 && index < this.frames.size()){
+           return this.frames.get(index);
        }
        return null;   
    }
@@ -129,28 +142,30 @@ public class Project {
    public String getUserName(){
        return this.userName;
    }
-   //return all of the images
-   public ArrayList<EditableImage> getAllImages(){
-       return this.images;
+   //return all of the frames
+   public ArrayList<Frame> getAllFrames(){
+       return this.frames;
    }
    /**
     * This method updates the indexes of each editable image, invoke after performing an operation
     * on a project's editable image arraylist
     */
    public void updateIndexesOfImages(){
-       this.updateNumberOfImages(); // This will be useful !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!1
-       for(int i = 0; i < this.images.size(); i++){
-           //set the index of each editable image to i
-           EditableImage currentImg = this.images.get(i);
-           currentImg.setIndex(i);
-       }
+       this.updateIndexesOfImages(0);
    }
-   //returns the index of this editable image on the arraylist, returns -1 if not found
-   public int indexOf(EditableImage img){
-       if(this.images.contains(img)){
-           return this.images.indexOf(img);
+   /**
+    * Updates the indexes of the frames from startIndex to the end, frames before an edit keep their indexes
+    * @param startIndex first index that may have changed
+    */
+   public void updateIndexesOfImages(int startIndex){
+       this.updateNumberOfImages();
+       for(int i = startIndex; i < this.frames.size(); i++){
+           this.frames.get(i).setIndex(i);
        }
-       return -1;
+   }
+   //returns the index of this frame on the arraylist, returns -1 if not found
+   public int indexOf(Frame frame){
+       return this.frames.indexOf(frame);
    }
    
    /*//Set the fps rate to 9
@@ -220,19 +235,50 @@ public class Project {
     public void setPlayScreen(PlayScreen playScreen){
         this.playScreen = playScreen;
     }*/
+    //Invoke from Database.openProject
+    public void setProjectLoader(ProjectLoader projectLoader){
+        this.projectLoader = projectLoader;
+    }
+    //Returns null if this project is not being loaded in the background
+    public ProjectLoader getProjectLoader(){
+        return this.projectLoader;
+    }
     public void setSelectedImageIndex(int index){
         this.selectedImgIndex = index;
     }
     public int getSelectedImageIndex(){
         return this.selectedImgIndex;
     }
+    /**
+     * Releases the EditableImage of the frames that are farther than RESIDENT_IMAGE_RADIUS from the given index
+     * Invoke after the selected image changes, released nodes are created again when they are selected or played
+     * @param selectedIndex index of the selected image
+     */
+    public void recycleFarFrames(int selectedIndex){
+        for(int i = 0; i < this.frames.size(); i++){
+            if(Math.abs(i - selectedIndex) > RESIDENT_IMAGE_RADIUS){
+                this.frames.get(i).recycleNodes();
+            }
+        }
+    }
+    //true if the image at the given index is close enough to the selected image to keep its edit level pixels
+    public boolean isNearSelectedImage(int index){
+        return Math.abs(index - this.selectedImgIndex) <= RESIDENT_IMAGE_RADIUS;
+    }
+    //Invoked by a frame when its pixels or drawings change
+    public void frameChanged(Frame frame){
+        if(this.editScreen != null){
+            this.editScreen.frameChanged(frame);
+        }
+    }
     /**
      * This method calls the corresponding method on the EditScreen object, will be invoked when a smallImage is clicked
+     * The EditableImage is swapped on the next pulse, so fast clicking doesn't swap it for every click
      * No bounds checking
      * @param index of the selected smallImage 
      */
     public void invokeUpdateEditableImagePane(int index){
-        this.editScreen.updateEditableImagePane(index);
+        this.editScreen.selectImage(index);
     }
 
 
@@ -244,55 +290,45 @@ public class Project {
      * @param endIndex 
      */
     public void reverse(int startIndex, int endIndex){
-        int high = endIndex;
-        int low = startIndex;
-        while(low < high){
-            EditableImage temp = this.images.remove(low);
-            //DEVAM ET
-            this.images.add(high , temp);
-            temp = this.images.remove(high - 1);
-            this.images.add(low , temp);        //MIGHT BE PROBLEMATIC
-            
-            
-            high--;
-            low++;
+        Collections.reverse(this.frames.subList(startIndex, endIndex + 1));
+        //only the reversed range changes its indexes
+        for(int i = startIndex; i <= endIndex; i++){
+            this.frames.get(i).setIndex(i);
         }
-        this.updateIndexesOfImages();
-        this.editScreen.setSmallImageBox();
+        this.editScreen.framesReordered(startIndex, endIndex);
     }
     
     //Inclusive start, inclusive end copy
+    //No image is decoded and no node is created here, frames share their pixels and drawings with the copies (see Frame.copy)
     public void copy(int minIndex , int maxIndex){
         // I assume that you have already convert these integers to ındex values
         
         //Clear the clonedArrayList so previous elements are disregarded
         this.clonedArrayList.clear();
         for(int i = minIndex; i <= maxIndex ;i++ ){
-            EditableImage currentImage = this.images.get(i);
-            EditableImage clonedImage = currentImage.clone();
+            Frame currentFrame = this.frames.get(i);
+            if(!currentFrame.isLoaded()){
+                ProjectLoader.loadNow(currentFrame); //the loader doesn't know the copy, so it must be loaded before it is made
+            }
+            Frame clonedFrame = currentFrame.copy();
             
-            //Add the cloned image to the clonedArrayList
-            this.clonedArrayList.add(clonedImage);
+            //Add the cloned frame to the clonedArrayList
+            this.clonedArrayList.add(clonedFrame);
         }
-        this.updateIndexesOfImages();
-        this.editScreen.setSmallImageBox();
+        //project itself doesn't change, so the filmstrip isn't rebuilt
     }
 
     public void remove (int minIndex, int maxIndex){
-
-        for (int i = minIndex; i<= maxIndex; i++ ){
-            images.remove(i);
-        }
-        updateIndexesOfImages();
-        this.editScreen.setSmallImageBox();
+        //removing from the sublist removes the whole range at once, removing index by index skipped every other frame
+        this.frames.subList(minIndex, maxIndex + 1).clear();
+        updateIndexesOfImages(minIndex);
+        this.editScreen.framesRemoved(minIndex, maxIndex - minIndex + 1);
     }
     //Inclusive start, inclusive end
     public void cut(int minIndex, int maxIndex){
         //First copy, then remove
         this.copy(minIndex, maxIndex);
         this.remove(minIndex, maxIndex);
-        this.updateIndexesOfImages();
-        this.editScreen.setSmallImageBox();
     }
     /**
      * Pastes the copiedArrayList to specified index
@@ -302,11 +338,11 @@ public class Project {
      */
     public void paste(int startIndex) throws Exception{
         //First clone the clonedArrayList to a temp so we can preserve it after paste operation
-        ArrayList<EditableImage> temp = new ArrayList<>();
+        ArrayList<Frame> temp = new ArrayList<>();
         for(int i = 0; i < this.clonedArrayList.size(); i++){
-            EditableImage currentEditableImage = this.clonedArrayList.get(i);
-            EditableImage clonedEditableImage = currentEditableImage.clone();
-            temp.add(clonedEditableImage);
+            Frame currentFrame = this.clonedArrayList.get(i);
+            Frame clonedFrame = currentFrame.copy();
+            temp.add(clonedFrame);
         }
         
         
@@ -314,15 +350,15 @@ public class Project {
             //no image has been copied, throw an exception
             throw new Exception("Exception: Nothing is copied"); //!!!Important, use this when handling the exception
         }
-        if(startIndex == this.images.size()){
+        if(startIndex == this.frames.size()){
             //last index of the current images is specified, just append the copied list to the end
-            this.images.addAll(this.clonedArrayList);
+            this.frames.addAll(this.clonedArrayList);
         }
         else{
-            this.images.addAll(startIndex, this.clonedArrayList);
+            this.frames.addAll(startIndex, this.clonedArrayList);
         }
-        this.updateIndexesOfImages();
-        this.editScreen.setSmallImageBox();
+        this.updateIndexesOfImages(startIndex);
+        this.editScreen.framesInserted(startIndex, this.clonedArrayList.size());
         
         //preserve the copied images
         this.clonedArrayList = temp;
@@ -330,12 +366,13 @@ public class Project {
     /**
      * this method adds the new images to the project during runtime
      * invoke from imageorderingchoicepane
-     * @param newImages 
+     * @param newFrames 
      */
-    public void addNewImages(ArrayList<EditableImage> newImages){
-        this.images.addAll(newImages);
+    public void addNewImages(ArrayList<Frame> newFrames){
+        int startIndex = this.frames.size();
+        this.frames.addAll(newFrames);
         
-        this.updateIndexesOfImages();
-        this.editScreen.setSmallImageBox();
+        this.updateIndexesOfImages(startIndex);
+        this.editScreen.framesInserted(startIndex, newFrames.size());
     }
 }
\ No newline at end of file
@@ -0,0 +1,109 @@
+package stopmotioneditor;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javafx.application.Platform;
+
+/**
+ * This class streams the pixels of a project's frames in the background after Database.openProject
+ * has returned frames that are not loaded. Frames nearest to the selected image are loaded first.
+ * Drawings and media are already read by openProject, workers never touch the database connection
+ */
+public class ProjectLoader {
+    public static final int LOADER_THREAD_COUNT = Math.max(1, FrameDecoder.DECODER_THREAD_COUNT - 1);
+
+    //Workers have their own threads, so the FrameDecoder is always free for the filmstrip, scrubber and onion skin tasks even on one core
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(LOADER_THREAD_COUNT, runnable -> {
+        Thread thread = new Thread(runnable, "ProjectLoader");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.NORM_PRIORITY - 1); //filmstrip and playback decodes are more urgent than streaming far frames
+        return thread;
+    });
+
+    private Project project;
+    private ArrayList<Frame> pendingFrames = new ArrayList<>(); //frames that no worker has taken yet, guarded by this
+    private volatile boolean isStopped = false;
+
+    public ProjectLoader(Project project){
+        this.project = project;
+        for(int i = 0; i < project.getNumberOfImages(); i++){
+            Frame currentFrame = project.getFrame(i);
+            if(!currentFrame.isLoaded()){
+                this.pendingFrames.add(currentFrame);
+            }
+        }
+    }
+    //Starts the workers on the loader threads, invoke once after the project is created
+    public void start(){
+        for(int i = 0; i < LOADER_THREAD_COUNT; i++){
+            EXECUTOR.execute(() -> this.work());
+        }
+    }
+    //Stops the workers after their current frame, frames that are not loaded yet keep their placeholders
+    public void stop(){
+        this.isStopped = true;
+    }
+    /**
+     * Marks the given frame as loaded without waiting for a worker, invoke from the JavaFX thread
+     * when a frame must be complete before its turn, e.g. before it is copied. Its pixels are decoded when they are needed
+     */
+    public static void loadNow(Frame frame){
+        frame.setLoaded();
+    }
+    //Returns the number of frames that are still waiting for a worker
+    public synchronized int getNumberOfPendingImages(){
+        return this.pendingFrames.size();
+    }
+
+    //Body of each worker, returns when there is no pending frame left
+    private void work(){
+        Frame frame = this.takeNearestFrame();
+        while(frame != null && !this.isStopped){
+            String filePath = frame.getFilePath();
+            Frame loadedFrame = frame;
+            try{
+                //Decode on this thread, only marking the frame as loaded is done on the JavaFX thread
+                //Far frames only get their thumbnail, the edit level is decoded when they are selected
+                if(this.project.isNearSelectedImage(frame.getIndex())){
+                    FrameImageCache.getEditImage(filePath);
+                }
+                FrameImageCache.getThumbnail(filePath);
+                Platform.runLater(() -> this.apply(loadedFrame));
+            }
+            catch(RuntimeException ex){
+                System.out.println("Frame load error");
+                System.out.println(ex);
+                Platform.runLater(() -> loadedFrame.setFailed()); //a broken frame doesn't stop the frames after it
+            }
+            frame = this.takeNearestFrame();
+        }
+    }
+    /**
+     * Removes and returns the pending frame which is nearest to the selected image of the project
+     * Selection may change while loading, so the distance is calculated every time
+     * @return null if every frame is taken
+     */
+    private synchronized Frame takeNearestFrame(){
+        if(this.pendingFrames.isEmpty()){
+            return null;
+        }
+        int selectedIndex = this.project.getSelectedImageIndex();
+        int nearestPosition = 0;
+        int nearestDistance = Integer.MAX_VALUE;
+        for(int i = 0; i < this.pendingFrames.size(); i++){
+            int distance = Math.abs(this.pendingFrames.get(i).getIndex() - selectedIndex);
+            if(distance < nearestDistance){
+                nearestDistance = distance;
+                nearestPosition = i;
+            }
+        }
+        return this.pendingFrames.remove(nearestPosition);
+    }
+    //Invoked on the JavaFX thread when a worker has finished a frame
+    private void apply(Frame frame){
+        if(!frame.isLoaded() && !frame.isFailed()){ //loadNow may have loaded it meanwhile
+            frame.setLoaded();
+        }
+    }
+}
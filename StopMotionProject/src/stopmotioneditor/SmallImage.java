@@ -5,18 +5,18 @@
  */
 package stopmotioneditor;
 
+import javafx.application.Platform;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Polyline;
 import javafx.scene.shape.Rectangle;
 
 /**
  *
  * @author yigit
  * this class extends FinalImage and represents the small images below the editing screen
+ * It displays the flattened thumbnail of its frame (see Frame.getThumbnailImage), so it has no Polyline nodes
  */
 public class SmallImage extends FinalImage{
     public final double SOUND_RECTANGLE_HEIGHT = 120;
@@ -30,19 +30,21 @@ public class SmallImage extends FinalImage{
     private Label indexLabel = new Label();//This is the label that specifies the index of image, eg index/length
     private StackPane smallImagePane = new StackPane();//this essentially holds the SmallImage and rectangles, rectangles will be used to determine selection and whether sound is being used
     private VBox smallImagePaneContainer = new VBox();//contains the finalImageContaine coming from subclass and indexLabel
-    private static Rectangle selectionRectangle;
-    private static Rectangle soundRectangle;//These rectangles are same for every instance of small image
-    private boolean hasSound; //Set with respect to EditableImage's sound data field
+    private Rectangle selectionRectangle;
+    private Rectangle soundRectangle;//Each instance has its own rectangles, several cells of the filmstrip may show them at the same time
+    private boolean hasSound; //Set with respect to the frame's audio
+    private boolean isSelected;
     //Inhereted fields from FinalImage
     /*protected ArrayList<Polyline> lines = new ArrayList<>(); //drawings that have been made
     protected Polyline lastLine; //represents the last line that is added to the lines
-    protected EditableImage editableImage;// editable image of this final image*/ 
+    protected Frame frame;// frame of this final image*/ 
     
     /**
-     *
+     * Invoke from the Filmstrip when a cell is created, the SmallImage is reused for other frames with setFrame
+     * Shows a placeholder until the frame is loaded
      */
-    public SmallImage(EditableImage editableImg, Image fxImage){
-        super(editableImg, fxImage);
+    public SmallImage(Frame frame){
+        super(frame, FrameImageCache.getPlaceholder());
         
         //set the dimensions
         this.setFitWidth(FinalImage.SMALL_IMAGE_WIDTH);
@@ -53,34 +55,62 @@ public class SmallImage extends FinalImage{
         soundRectangle = new Rectangle(SOUND_RECTANGLE_WIDTH,SOUND_RECTANGLE_HEIGHT,SOUND_RECTANGLE_COLOR);
         
         //initialize the stackpane, no selection or sound at first
-        this.initializeSmallImagePane();
+        this.smallImagePane.getChildren().add(this);
         this.setSmallImagePaneContainer();
         this.setEventHandling();
-    }
-    
-    public SmallImage(EditableImage editableImg,String filePath){
-        super(editableImg,filePath);
         
-        //set the dimensions
-        this.setFitWidth(FinalImage.SMALL_IMAGE_WIDTH);
-        this.setFitHeight(FinalImage.SMALL_IMAGE_HEIGHT);
+        this.setFrame(frame);
+    }
+    /**
+     * Displays the given frame on this SmallImage: its thumbnail, drawings, index, selection and sound
+     * Invoke when a cell of the filmstrip is scrolled onto another frame
+     */
+    public void setFrame(Frame newFrame){
+        this.unbindFrame();
+        this.frame = newFrame;
+        newFrame.bindSmallImage(this);
         
-        //initialize rectangles, regardless of selection
-        selectionRectangle = new Rectangle(SELECTION_RECTANGLE_WIDTH,SELECTION_RECTANGLE_HEIGHT,SELECTION_RECTANGLE_COLOR);
-        soundRectangle = new Rectangle(SOUND_RECTANGLE_WIDTH,SOUND_RECTANGLE_HEIGHT,SOUND_RECTANGLE_COLOR);
+        //decoded at the thumbnail size, not the full resolution, drawings are drawn into it so they aren't nodes
+        if(!newFrame.isLoaded()){
+            this.setImage(newFrame.getPlaceholder());
+        }
+        else if(newFrame.hasThumbnailPixels()){
+            this.setImage(newFrame.getThumbnailImage());
+        }
+        else{
+            //Scrolled past the prefetched frames, decoding here would stall the scrolling so the placeholder is shown meanwhile
+            this.setImage(newFrame.getPlaceholder());
+            this.requestThumbnail(newFrame);
+        }
         
-        //initialize the stackpane, no selection or sound at first
-        this.initializeSmallImagePane();
-        this.setSmallImagePaneContainer();
-        this.setEventHandling();
+        this.updateIndexLabel();
+        this.hasSound = newFrame.hasAudio();
+        this.setSelected(newFrame.getIndex() == newFrame.getProject().getSelectedImageIndex());
     }
-    //Invoke when a drawing has been made
-    public void addLastLine(){
-        super.addLastLine(EditableImage.SMALL_IMAGE_EDITABLE_IMAGE_RATIO);
+    //Decodes the thumbnail of the frame on the decoder threads, it is displayed if this SmallImage still shows that frame
+    private void requestThumbnail(Frame frame){
+        String filePath = frame.getFilePath();
+        FrameDecoder.execute(() -> {
+            try{
+                FrameImageCache.getThumbnail(filePath);
+            }
+            catch(RuntimeException ex){
+                System.out.println("Frame decode error");
+                System.out.println(ex);
+                return; //placeholder stays
+            }
+            Platform.runLater(() -> {
+                if(this.frame == frame && frame.isLoaded()){
+                    this.setImage(frame.getThumbnailImage());
+                }
+            });
+        });
     }
-    //Invoke when an EditableImage is copied, invoke for each polyline to be copied if any
-    public void addLine(Polyline editableImagePolyline){
-        super.addLine(editableImagePolyline, EditableImage.SMALL_IMAGE_EDITABLE_IMAGE_RATIO);
+    //Invoke when the cell of this SmallImage becomes empty, the frame stops updating this SmallImage
+    public void unbindFrame(){
+        if(this.frame != null){
+            this.frame.unbindSmallImage(this);
+        }
     }
     
     /*
@@ -88,6 +118,7 @@ public class SmallImage extends FinalImage{
         true for selection
     */
     public void setSelected(boolean isSelected){
+        this.isSelected = isSelected;
         this.smallImagePane.getChildren().clear();//remove everything from the StackPane
         
         if(isSelected){            
@@ -107,31 +138,12 @@ public class SmallImage extends FinalImage{
      * @param hasSound true when EditableImage
      */
     public void setSoundState(boolean hasSound){
-        //selection comes before the sound
-        this.smallImagePane.getChildren().clear();
         this.hasSound = hasSound;
-        if(hasSound){
-            //add the selection then, the sound
-            smallImagePane.getChildren().addAll(this.selectionRectangle,this.soundRectangle,this);
-        }
-        else{
-            smallImagePane.getChildren().addAll(this.selectionRectangle, this);
-        }
+        this.setSelected(this.isSelected); //selection comes before the sound
     }
     public VBox getSmallImagePaneContainer(){
         return this.smallImagePaneContainer;
     }
-    //Initializes the smallImagePane and indexLabel
-    public void initializeSmallImagePane(){
-        int index = this.editableImage.getIndex(); //index of this specific  image
-        //initialize index label
-        this.updateIndexLabel();
-        if(index == 0){
-            // first image is selected initially
-            this.smallImagePane.getChildren().add(this.selectionRectangle);
-        }
-        this.smallImagePane.getChildren().add(this);
-    }
     //adds the finalImageContainer and indexLabel to paneContainer
     public void setSmallImagePaneContainer(){
         //this.smallImagePaneContainer.getChildren().clear(); //!!!!! MIGHT BE PROBLEMATIC!!!
@@ -148,28 +160,22 @@ public class SmallImage extends FinalImage{
      * index data field. Must be invoked when an operation is made on the project's array list of EditableImage(Deletion, adding, cutting etc.)
      */
     public void updateIndexLabel(){
-        int index = this.editableImage.getIndex();
-        Project project = this.editableImage.getProject();//this smallImage's project
+        int index = this.frame.getIndex();
+        Project project = this.frame.getProject();//this smallImage's project
         
         int totalImagesInProject = project.getNumberOfImages();
         String value = "(" + (index + 1)+ "," + totalImagesInProject + ")";
+        if(this.frame.getHoldCount() > 1){
+            value += " x" + this.frame.getHoldCount(); //held for this many frame durations
+        }
         this.indexLabel.setText(value);
     }
     private void setEventHandling(){
         //When a smallImage is clicked
         this.setOnMouseClicked(e -> {
-            //Change the state of previous selectedSmallImage to false
-            Project project = this.editableImage.getProject();
-            int prevIndex = project.getSelectedImageIndex();
-            EditableImage prevImage = project.getImage(prevIndex);
-            SmallImage prevSmallImage = prevImage.getSmallImage();
-            prevSmallImage.setSelected(false);
-            
-            //Select the current image
-            this.setSelected(true); // this SmallImage is selected since it's clicked
-            
-            //Open the corresponding editable Image
-            int currentIndex = this.editableImage.getIndex();
+            //Select the corresponding editable Image, the selection rectangles are moved by the FrameScrubber
+            Project project = this.frame.getProject();
+            int currentIndex = this.frame.getIndex();
             project.invokeUpdateEditableImagePane(currentIndex);
         });
         
@@ -0,0 +1,86 @@
+package stopmotioneditor;
+
+import java.util.List;
+import javafx.collections.ObservableList;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.shape.Polyline;
+import javafx.scene.shape.StrokeLineCap;
+import javafx.scene.shape.StrokeLineJoin;
+
+/**
+ * This class draws the completed drawings of a frame onto a single Canvas instead of adding a Polyline node for each of them.
+ * A new drawing is drawn on top of the others, the whole canvas is drawn again only when a drawing is removed or the
+ * drawings are replaced. Drawings are given in EditableImage coordinates and scaled to the size of the layer
+ */
+public class StrokeLayer extends Canvas{
+    public static final double HIT_TOLERANCE = 3; //a drawing can be clicked this many pixels away from its edge
+
+    private double ratio; //size of this layer divided by the EditableImage size
+
+    public StrokeLayer(double width, double height, double ratio){
+        super(width, height);
+        this.ratio = ratio;
+        this.setMouseTransparent(true); //mouse events go to the image below
+    }
+    //Clears the layer and draws every given drawing, invoke when a drawing is removed or the drawings of the frame are replaced
+    public void redraw(List<Polyline> lines){
+        GraphicsContext graphics = this.getGraphicsContext2D();
+        graphics.clearRect(0, 0, this.getWidth(), this.getHeight());
+        for(Polyline line : lines){
+            this.drawLine(line);
+        }
+    }
+    //Draws the given drawing on top of the others, invoke when a drawing is completed
+    public void drawLine(Polyline line){
+        ObservableList<Double> coordinates = line.getPoints();
+        int pointCount = coordinates.size() / 2;
+        if(pointCount < 2){
+            return; //a single point isn't displayed by a Polyline either
+        }
+        double[] xPoints = new double[pointCount];
+        double[] yPoints = new double[pointCount];
+        for(int i = 0; i < pointCount; i++){
+            xPoints[i] = coordinates.get(2 * i) * this.ratio;
+            yPoints[i] = coordinates.get(2 * i + 1) * this.ratio;
+        }
+        GraphicsContext graphics = this.getGraphicsContext2D();
+        graphics.setStroke(line.getStroke());
+        graphics.setLineWidth(line.getStrokeWidth() * this.ratio);
+        //same caps and joins as a Polyline, so the drawing looks the same as while it was being made
+        graphics.setLineCap(StrokeLineCap.SQUARE);
+        graphics.setLineJoin(StrokeLineJoin.MITER);
+        graphics.strokePolyline(xPoints, yPoints, pointCount);
+    }
+    /**
+     * Finds the drawing at the given point, used to remove a drawing by right clicking it
+     * @param lines drawings in EditableImage coordinates
+     * @param x EditableImage coordinate
+     * @param y EditableImage coordinate
+     * @return index of the topmost drawing at the point, -1 if there is none
+     */
+    public static int indexOfLineAt(List<Polyline> lines, double x, double y){
+        for(int i = lines.size() - 1; i >= 0; i--){ //the last drawing is on top
+            Polyline line = lines.get(i);
+            double maxDistance = line.getStrokeWidth() / 2 + HIT_TOLERANCE;
+            ObservableList<Double> coordinates = line.getPoints();
+            for(int j = 0; j + 3 < coordinates.size(); j += 2){
+                double distance = distanceToSegment(x, y, coordinates.get(j), coordinates.get(j + 1), coordinates.get(j + 2), coordinates.get(j + 3));
+                if(distance <= maxDistance){
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+    private static double distanceToSegment(double x, double y, double startX, double startY, double endX, double endY){
+        double dx = endX - startX;
+        double dy = endY - startY;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = 0;
+        if(lengthSquared > 0){
+            t = Math.max(0, Math.min(1, ((x - startX) * dx + (y - startY) * dy) / lengthSquared));
+        }
+        return Math.hypot(x - (startX + t * dx), y - (startY + t * dy));
+    }
+}
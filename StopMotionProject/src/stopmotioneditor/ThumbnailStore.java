@@ -0,0 +1,420 @@
+package stopmotioneditor;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+
+/**
+ * This class keeps the pre-scaled levels of a project's images in a sidecar folder inside the project folder
+ * (Projects/ProjectX/.thumbnails). Every image has a thumbnail level for the SmallImage, an edit level for the EditableImage
+ * and a play level for the PlayScreen, each one is exactly the size of its view so ImageView doesn't scale it on every pulse.
+ * Levels are keyed by the content hash of the source image, and an index file remembers the modification time and size
+ * of each source so the hash is only computed again when the source changes.
+ * Levels are never written on the JavaFX thread: a missing level is written on the FrameDecoder pool and the source is decoded meanwhile.
+ */
+public final class ThumbnailStore {
+    public static final String THUMBNAIL_FOLDER_NAME = ".thumbnails";
+    public static final String INDEX_FILE_NAME = "index.json";
+    public static final String PROJECTS_FOLDER_NAME = "Projects";
+    public static final String THUMBNAIL_FORMAT = "png";
+    public static final String LEVEL_FORMAT = "jpg";  // edit and play levels are photos, png would be several MBs each
+    public static final float LEVEL_QUALITY = 0.92f;
+
+    private static final HashMap<File, HashMap<String, ThumbnailEntry>> INDEXES = new HashMap<>(); // project folder -> loaded index
+    private static final HashMap<File, Boolean> DIRTY_INDEXES = new HashMap<>(); // project folder -> true if index is changed after it is read
+    private static final Set<String> PENDING_LEVELS = ConcurrentHashMap.newKeySet(); // level files that are being written for the JavaFX thread
+
+    private ThumbnailStore() {}
+
+    /**
+     * This class represents a line of the index file
+     */
+    private static class ThumbnailEntry {
+        private long lastModified;  // modification time of the source when the levels were written
+        private long size;          // size of the source in bytes
+        private String hash;        // content hash of the source, also the start of the name of the level files
+        private ArrayList<String> sourceLevels;  // level sizes the source already fits in (e.g. 1920x1080), no file is written for them
+    }
+
+    /**
+     * INVOKE THIS METHOD WHEN AN IMAGE IS COPIED INTO A PROJECT FOLDER
+     * Writes the thumbnail, edit and play levels of the given image if they don't exist or if the image has changed since
+     * @param source image file inside a project folder
+     */
+    public static void createImageLevels (File source) {
+        getLevelFile(source, FinalImage.SMALL_IMAGE_WIDTH, FinalImage.SMALL_IMAGE_HEIGHT);
+        getLevelFile(source, EditableImage.EDITABLE_IMAGE_WIDTH, EditableImage.EDITABLE_IMAGE_HEIGHT);
+        getLevelFile(source, FinalImage.BIG_IMAGE_WIDTH, FinalImage.BIG_IMAGE_HEIGHT);
+    }
+
+    /**
+     * This method returns the stored thumbnail of the given image
+     * @param fileUri URI string of the image file, same with the one passed to the Image constructor
+     * @return thumbnail image, null if the image is not inside a project folder or thumbnail cannot be written
+     */
+    public static Image loadThumbnail (String fileUri) {
+        return loadLevel(fileUri, FinalImage.SMALL_IMAGE_WIDTH, FinalImage.SMALL_IMAGE_HEIGHT);
+    }
+
+    /**
+     * This method returns the stored level of the given image that fits in width x height, writes it first if necessary.
+     * On the JavaFX thread only a level that is already written is read, a missing one is written in the background
+     * @param fileUri URI string of the image file, same with the one passed to the Image constructor
+     * @return level image, null if the image is not inside a project folder, it isn't bigger than the level
+     * or the level isn't written yet (then the source should be decoded at the level size directly)
+     */
+    public static Image loadLevel (String fileUri, double width, double height) {
+        File source;
+        try {
+            source = new File(URI.create(fileUri));
+        }
+        catch (IllegalArgumentException ex) {
+            return null;  // not a file URI
+        }
+        File levelFile;
+        if (Platform.isFxApplicationThread()) {
+            // Hashing and scaling would stall the pulse
+            levelFile = findLevelFile(source, width, height);
+            if (levelFile == null) {
+                createLevelLater(source, width, height);
+            }
+        }
+        else {
+            levelFile = getLevelFile(source, width, height);
+        }
+        if (levelFile == null) {
+            return null;
+        }
+        return new Image(levelFile.toURI().toString());
+    }
+
+    /**
+     * INVOKE THIS METHOD AFTER LEVELS ARE CREATED OR WHEN A PROJECT IS CLOSED
+     * Writes the changed index files to their project folders
+     */
+    public static synchronized void flush () {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        for (File projectFolder : INDEXES.keySet()) {
+            if (DIRTY_INDEXES.getOrDefault(projectFolder, false)) {
+                File indexFile = new File(getThumbnailFolder(projectFolder), INDEX_FILE_NAME);
+                try {
+                    Files.write(indexFile.toPath(), gson.toJson(INDEXES.get(projectFolder)).getBytes(StandardCharsets.UTF_8));
+                    DIRTY_INDEXES.put(projectFolder, false);
+                }
+                catch (IOException ex) {
+                    System.out.println("Thumbnail index save error");
+                    System.out.println(ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the level file of the source if it is already written for the current content of the source, writes nothing
+     * @return null if the level isn't written, no level is needed or the source is not inside a project folder
+     */
+    private static File findLevelFile (File source, double width, double height) {
+        File projectFolder = getProjectFolder(source);
+        if (projectFolder == null) {
+            return null;
+        }
+        synchronized (ThumbnailStore.class) {
+            ThumbnailEntry entry = getIndex(projectFolder).get(source.getName());
+            if (entry == null || !isEntryOf(entry, source)) {
+                return null;
+            }
+            File levelFile = getLevelFileName(getThumbnailFolder(projectFolder), entry.hash, width, height);
+            return levelFile.exists() ? levelFile : null;
+        }
+    }
+
+    // Writes the level on the FrameDecoder pool, a level that is already being written isn't queued again
+    private static void createLevelLater (File source, double width, double height) {
+        String levelKey = source.getAbsolutePath() + "@" + getLevelSize(width, height);
+        if (PENDING_LEVELS.add(levelKey)) {
+            FrameDecoder.execute(() -> {
+                try {
+                    getLevelFile(source, width, height);
+                }
+                finally {
+                    PENDING_LEVELS.remove(levelKey);
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns the level file of the source, writes it first if it is missing or stale.
+     * The lock is only held while the index is read or changed, so FrameDecoder threads hash and scale in parallel
+     * @return null if the source is not inside a project folder or no level is needed
+     */
+    private static File getLevelFile (File source, double width, double height) {
+        File projectFolder = getProjectFolder(source);
+        if (projectFolder == null) {
+            return null;
+        }
+        File thumbnailFolder = getThumbnailFolder(projectFolder);
+        boolean isThumbnail = width == FinalImage.SMALL_IMAGE_WIDTH && height == FinalImage.SMALL_IMAGE_HEIGHT;
+
+        // Source is unchanged, the stored level can be read directly or written with the known hash
+        String hash = null;
+        ThumbnailEntry entry;
+        synchronized (ThumbnailStore.class) {
+            entry = getIndex(projectFolder).get(source.getName());
+            if (entry != null && isEntryOf(entry, source)) {
+                if (entry.sourceLevels != null && entry.sourceLevels.contains(getLevelSize(width, height))) {
+                    return null;  // source already fits in the level, known without reading it again
+                }
+                File levelFile = getLevelFileName(thumbnailFolder, entry.hash, width, height);
+                if (levelFile.exists()) {
+                    return levelFile;
+                }
+                hash = entry.hash;
+            }
+        }
+
+        try {
+            if (hash == null) {
+                hash = getContentHash(source);
+            }
+            File levelFile = getLevelFileName(thumbnailFolder, hash, width, height);
+            if (!levelFile.exists()) {
+                // Thumbnails are always written, other levels only if they are smaller than the source
+                BufferedImage level = readScaledImage(source, width, height, isThumbnail);
+                if (level == null) {
+                    if (!isThumbnail && ImageProbe.isValidImage(source)) {
+                        updateEntry(projectFolder, source, hash, getLevelSize(width, height));  // already small enough, the source is the level
+                    }
+                    return null;
+                }
+                thumbnailFolder.mkdirs();
+                // Written to a temporary file first, two sources with the same content may be written at the same time
+                String format = isThumbnail ? THUMBNAIL_FORMAT : LEVEL_FORMAT;
+                File temporaryFile = File.createTempFile(hash, "." + format, thumbnailFolder);
+                writeImage(level, format, temporaryFile);
+                Files.move(temporaryFile.toPath(), levelFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            if (entry == null || !entry.hash.equals(hash) || !isEntryOf(entry, source)) {
+                updateEntry(projectFolder, source, hash, null);
+            }
+            return levelFile;
+        }
+        catch (IOException ex) {
+            System.out.println("Thumbnail write error");
+            System.out.println(ex);
+            return null;
+        }
+    }
+
+    /**
+     * Puts the new hash of the source into the index, removes the stale levels if the content of the source has changed
+     * @param sourceLevel size of a level the source fits in, null if a level file is written
+     */
+    private static synchronized void updateEntry (File projectFolder, File source, String hash, String sourceLevel) {
+        HashMap<String, ThumbnailEntry> index = getIndex(projectFolder);
+        ThumbnailEntry entry = index.get(source.getName());
+        if (entry != null && !entry.hash.equals(hash) && !isHashUsed(index, entry.hash, source.getName())) {
+            File[] staleLevels = getThumbnailFolder(projectFolder).listFiles((folder, name) -> name.startsWith(entry.hash));
+            if (staleLevels != null) {
+                for (File staleLevel : staleLevels) {
+                    staleLevel.delete();
+                }
+            }
+        }
+        ThumbnailEntry newEntry = new ThumbnailEntry();
+        newEntry.lastModified = source.lastModified();
+        newEntry.size = source.length();
+        newEntry.hash = hash;
+        if (entry != null && entry.hash.equals(hash)) {
+            newEntry.sourceLevels = entry.sourceLevels;  // same content, so it still fits in the same levels
+        }
+        if (sourceLevel != null) {
+            if (newEntry.sourceLevels == null) {
+                newEntry.sourceLevels = new ArrayList<>();
+            }
+            if (!newEntry.sourceLevels.contains(sourceLevel)) {
+                newEntry.sourceLevels.add(sourceLevel);
+            }
+        }
+        index.put(source.getName(), newEntry);
+        DIRTY_INDEXES.put(projectFolder, true);
+    }
+
+    // Thumbnails keep their old name (hash.png), other levels have their size in the name (hash-1280x720.jpg)
+    private static File getLevelFileName (File thumbnailFolder, String hash, double width, double height) {
+        if (width == FinalImage.SMALL_IMAGE_WIDTH && height == FinalImage.SMALL_IMAGE_HEIGHT) {
+            return new File(thumbnailFolder, hash + "." + THUMBNAIL_FORMAT);
+        }
+        return new File(thumbnailFolder, hash + "-" + getLevelSize(width, height) + "." + LEVEL_FORMAT);
+    }
+
+    private static String getLevelSize (double width, double height) {
+        return (int) width + "x" + (int) height;
+    }
+
+    // Returns the project folder of the source, null if it is not an image file of a project
+    private static File getProjectFolder (File source) {
+        File projectFolder = source.getAbsoluteFile().getParentFile();
+        if (projectFolder == null || projectFolder.getParentFile() == null
+                || !projectFolder.getParentFile().getName().equals(PROJECTS_FOLDER_NAME) || !source.isFile()) {
+            return null;  // levels are only stored for images of projects
+        }
+        return projectFolder;
+    }
+
+    // true if the entry is written for the current content of the source
+    private static boolean isEntryOf (ThumbnailEntry entry, File source) {
+        return entry.lastModified == source.lastModified() && entry.size == source.length();
+    }
+
+    // true if another source has the same content, so their levels must be kept
+    private static boolean isHashUsed (HashMap<String, ThumbnailEntry> index, String hash, String exceptName) {
+        for (String name : index.keySet()) {
+            if (!name.equals(exceptName) && index.get(name).hash.equals(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Reads the index of the project folder once, later calls return the same map. Call while holding the lock
+    private static HashMap<String, ThumbnailEntry> getIndex (File projectFolder) {
+        HashMap<String, ThumbnailEntry> index = INDEXES.get(projectFolder);
+        if (index != null) {
+            return index;
+        }
+        File indexFile = new File(getThumbnailFolder(projectFolder), INDEX_FILE_NAME);
+        if (indexFile.exists()) {
+            try {
+                Gson gson = new GsonBuilder().setPrettyPrinting().create();
+                Type indexType = new TypeToken<HashMap<String, ThumbnailEntry>>(){}.getType();
+                index = gson.fromJson(new String(Files.readAllBytes(indexFile.toPath()), StandardCharsets.UTF_8), indexType);
+            }
+            catch (IOException | RuntimeException ex) {
+                System.out.println("Thumbnail index read error");  // a corrupt index is rebuilt
+            }
+        }
+        if (index == null) {
+            index = new HashMap<>();
+        }
+        INDEXES.put(projectFolder, index);
+        return index;
+    }
+
+    /**
+     * Reads the image subsampled close to the level size, then scales it to fit width x height.
+     * Only ImageIO is used so this works on the Swing thread aswell, where JavaFX may not be started
+     * @param allowUpscale false if null should be returned for sources that already fit in width x height
+     * @return null if there is no reader for the file
+     */
+    private static BufferedImage readScaledImage (File source, double width, double height, boolean allowUpscale) throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(source)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (iis == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                double scale = Math.min(width / sourceWidth, height / sourceHeight);
+                if (scale >= 1 && !allowUpscale) {
+                    return null;
+                }
+                int targetWidth = Math.max(1, (int) Math.round(sourceWidth * scale));
+                int targetHeight = Math.max(1, (int) Math.round(sourceHeight * scale));
+
+                // Skip pixels while reading so the full resolution image is never held
+                int subsampling = Math.max(1, Math.min(sourceWidth / targetWidth, sourceHeight / targetHeight));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage subsampled = reader.read(0, param);
+
+                BufferedImage level = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+                Graphics2D g2d = level.createGraphics();
+                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g2d.drawImage(subsampled, 0, 0, targetWidth, targetHeight, null);
+                g2d.dispose();
+                return level;
+            }
+            finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Writes png with the default settings, jpg with LEVEL_QUALITY
+    private static void writeImage (BufferedImage image, String format, File file) throws IOException {
+        if (!format.equals(LEVEL_FORMAT)) {
+            ImageIO.write(image, format, file);
+            return;
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(LEVEL_FORMAT).next();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(file)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(LEVEL_QUALITY);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+        finally {
+            writer.dispose();
+        }
+    }
+
+    private static File getThumbnailFolder (File projectFolder) {
+        return new File(projectFolder, THUMBNAIL_FOLDER_NAME);
+    }
+
+    // Returns the SHA-1 of the file content as a hexadecimal string
+    private static String getContentHash (File file) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);  // every Java platform has SHA-1
+        }
+    }
+}